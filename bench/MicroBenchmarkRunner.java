@@ -0,0 +1,197 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class MicroBenchmarkRunner {
+    // Префикс строки, которой дочерняя JVM передает замеры родительской
+    static final String RESULT_PREFIX = "RESULT ";
+
+    // Сюда складываются результаты вызовов, чтобы JIT не удалил измеряемый код
+    static volatile Object sink;
+
+    interface Benchmark extends AutoCloseable {
+        default void prepareInvocation() throws Exception {
+            // Подготовка перед каждым вызовом (в замер не входит)
+        }
+
+        Object invoke() throws Exception;
+        // Измеряемый вызов; результат передается в sink
+
+        default void cleanupInvocation() throws Exception {
+            // Уборка после каждого вызова (в замер не входит)
+        }
+
+        @Override
+        default void close() throws IOException {
+            // Освобождает ресурсы, созданные для всех вызовов. Закрытие не ждет других потоков и
+            // поэтому не объявляет InterruptedException (см. AutoCloseable.close)
+        }
+    }
+
+    interface BenchmarkFactory {
+        Benchmark create(WordLengthDistribution distribution, int words, long seed) throws Exception;
+        // Создает бенчмарк с данными заданного распределения длин слов
+    }
+
+    static class Result {
+        final String benchmark;
+        final WordLengthDistribution distribution;
+        final double[] samplesMs;
+
+        Result(String benchmark, WordLengthDistribution distribution, double[] samplesMs) {
+            this.benchmark = benchmark;
+            this.distribution = distribution;
+            this.samplesMs = samplesMs;
+        }
+
+        double mean() {
+            // Среднее время одного вызова
+            return Arrays.stream(samplesMs).average().orElse(0);
+        }
+
+        double stdev() {
+            // Стандартное отклонение времени вызова
+            double mean = mean();
+            double sum = 0;
+            for (double sample : samplesMs) {
+                sum += (sample - mean) * (sample - mean);
+            }
+            return samplesMs.length > 1 ? Math.sqrt(sum / (samplesMs.length - 1)) : 0;
+        }
+
+        double min() {
+            return Arrays.stream(samplesMs).min().orElse(0);
+        }
+
+        double max() {
+            return Arrays.stream(samplesMs).max().orElse(0);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final int forks;
+    private final int words;
+    private final long seed;
+
+    MicroBenchmarkRunner(int warmupIterations, int measurementIterations, int forks, int words, long seed) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.forks = forks;
+        this.words = words;
+        this.seed = seed;
+    }
+
+    Result run(String name, BenchmarkFactory factory, WordLengthDistribution distribution) throws Exception {
+        // Выполняет бенчмарк в отдельных JVM (forks > 0) или в текущей JVM и объединяет замеры
+        if (forks <= 0) {
+            return new Result(name, distribution, measure(factory, distribution));
+        }
+        List<Double> samples = new ArrayList<>();
+        for (int fork = 0; fork < forks; fork++) {
+            for (double sample : runForked(name, distribution)) {
+                samples.add(sample);
+            }
+        }
+        return new Result(name, distribution, samples.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    double[] measure(BenchmarkFactory factory, WordLengthDistribution distribution) throws Exception {
+        // Прогревает код и измеряет каждый вызов отдельно
+        try (Benchmark benchmark = factory.create(distribution, words, seed)) {
+            for (int i = 0; i < warmupIterations; i++) {
+                invokeOnce(benchmark);
+            }
+            double[] samples = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                samples[i] = invokeOnce(benchmark) / 1_000_000.0;
+            }
+            return samples;
+        }
+    }
+
+    private static long invokeOnce(Benchmark benchmark) throws Exception {
+        // Замеряет один вызов без учета подготовки и уборки
+        benchmark.prepareInvocation();
+        long start = System.nanoTime();
+        sink = benchmark.invoke();
+        long elapsed = System.nanoTime() - start;
+        benchmark.cleanupInvocation();
+        return elapsed;
+    }
+
+    private double[] runForked(String name, WordLengthDistribution distribution) throws IOException, InterruptedException {
+        // Запускает бенчмарк в новой JVM с тем же classpath, чтобы профили JIT не смешивались
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(java.lang.management.ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SortMicroBenchmarks.class.getName());
+        command.addAll(Arrays.asList("--child", name, distribution.name(),
+                "--warmup", String.valueOf(warmupIterations),
+                "--iterations", String.valueOf(measurementIterations),
+                "--words", String.valueOf(words),
+                "--seed", String.valueOf(seed)));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        double[] samples = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    samples = Arrays.stream(line.substring(RESULT_PREFIX.length()).split(","))
+                            .mapToDouble(Double::parseDouble).toArray();
+                } else {
+                    System.err.println("  [fork] " + line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || samples == null) {
+            throw new IOException("Дочерняя JVM завершилась с кодом " + exitCode + " для " + name);
+        }
+        return samples;
+    }
+
+    static String formatSamples(double[] samples) {
+        // Кодирует замеры в строку для передачи из дочерней JVM
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < samples.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(String.format(Locale.ROOT, "%.4f", samples[i]));
+        }
+        return builder.toString();
+    }
+
+    static void printTable(List<Result> results) {
+        // Выводит результаты в виде таблицы (время одного вызова в мс)
+        System.out.printf("%-32s %-8s %6s %12s %10s %10s %10s%n",
+                "Benchmark", "Words", "Cnt", "Mean, ms", "Error", "Min", "Max");
+        for (Result result : results) {
+            System.out.printf(Locale.ROOT, "%-32s %-8s %6d %12.3f %10.3f %10.3f %10.3f%n",
+                    result.benchmark, result.distribution.name().toLowerCase(Locale.ROOT),
+                    result.samplesMs.length, result.mean(), result.stdev(), result.min(), result.max());
+        }
+    }
+
+    static void writeCsv(List<Result> results, File file) throws IOException {
+        // Сохраняет результаты в CSV для сравнения между запусками
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("benchmark,distribution,samples,mean_ms,stdev_ms,min_ms,max_ms");
+            for (Result result : results) {
+                writer.printf(Locale.ROOT, "%s,%s,%d,%.4f,%.4f,%.4f,%.4f%n",
+                        result.benchmark, result.distribution.name().toLowerCase(Locale.ROOT),
+                        result.samplesMs.length, result.mean(), result.stdev(), result.min(), result.max());
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,290 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class SortMicroBenchmarks {
+    private static final String USAGE =
+            "Использование: java -cp <классы> SortMicroBenchmarks [параметры]\n" +
+            "  --benchmark <часть имени>   запускать только подходящие бенчмарки\n" +
+            "  --distribution <имя|all>    short | natural | long | all (по умолчанию all)\n" +
+            "  --words <N>                 количество слов в данных (по умолчанию 200000)\n" +
+            "  --warmup <N>                прогревочные вызовы (по умолчанию 5)\n" +
+            "  --iterations <N>            измеряемые вызовы (по умолчанию 10)\n" +
+            "  --forks <N>                 отдельные JVM на бенчмарк, 0 - в текущей (по умолчанию 1)\n" +
+            "  --seed <N>                  начальное значение генератора (по умолчанию 42)\n" +
+            "  --csv <файл>                сохранить результаты в CSV";
+
+    // Количество серий, которые сливает бенчмарк многопутевого слияния
+    private static final int MERGE_FAN_IN = 16;
+    // Количество слов в строке генерируемого текста
+    private static final int WORDS_PER_LINE = 12;
+
+    static Map<String, MicroBenchmarkRunner.BenchmarkFactory> createBenchmarks() {
+        // Перечисляет измеряемые горячие участки алгоритмов
+        Map<String, MicroBenchmarkRunner.BenchmarkFactory> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("tokenize.readChunkFromFile", SortMicroBenchmarks::readChunkBenchmark);
+        benchmarks.put("spill.createSortedTempFile", SortMicroBenchmarks::createSortedTempFileBenchmark);
+        benchmarks.put("merge.kWayMerge", SortMicroBenchmarks::kWayMergeBenchmark);
+        benchmarks.put("merge.mergeTwoFiles", SortMicroBenchmarks::mergeTwoFilesBenchmark);
+        benchmarks.put("runs.replacementSelection", SortMicroBenchmarks::replacementSelectionBenchmark);
+        benchmarks.put("distribute.sortWithBuckets", SortMicroBenchmarks::sortWithBucketsBenchmark);
+        return benchmarks;
+    }
+
+    private static MicroBenchmarkRunner.Benchmark readChunkBenchmark(WordLengthDistribution distribution,
+                                                                    int words, long seed) throws IOException {
+        // Разбивает входной файл на слова через BaseExternalSorter.readChunkFromFile
+        File input = writeInput(distribution, words, seed);
+        KWayMergeSort sorter = new KWayMergeSort();
+        return new MicroBenchmarkRunner.Benchmark() {
+            @Override
+            public Object invoke() throws Exception {
+                long count = 0;
+                try (WordSource source = new WordSource(input, null)) {
+                    WordArena chunk;
+                    while (!(chunk = sorter.readChunkFromFile(source, SortJob.DEFAULT_MEMORY_BUDGET)).isEmpty()) {
+                        count += chunk.size();
+                    }
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {
+                input.delete();
+            }
+        };
+    }
+
+    private static MicroBenchmarkRunner.Benchmark createSortedTempFileBenchmark(WordLengthDistribution distribution,
+                                                                               int words, long seed) {
+        // Сортирует чанк и записывает его во временный файл
+        List<String> source = distribution.generateWords(words, seed);
+        KWayMergeSort sorter = new KWayMergeSort();
+        return new MicroBenchmarkRunner.Benchmark() {
+            private List<String> chunk;
+            private File result;
+
+            @Override
+            public void prepareInvocation() {
+                chunk = new ArrayList<>(source);
+            }
+
+            @Override
+            public Object invoke() throws Exception {
+                result = sorter.createSortedTempFile(chunk, "bench_spill_");
+                return result;
+            }
+
+            @Override
+            public void cleanupInvocation() {
+                result.delete();
+            }
+        };
+    }
+
+    private static MicroBenchmarkRunner.Benchmark kWayMergeBenchmark(WordLengthDistribution distribution,
+                                                                    int words, long seed) throws IOException {
+        // Сливает MERGE_FAN_IN отсортированных серий через KWayMergeSort.kWayMerge
+        KWayMergeSort sorter = new KWayMergeSort();
+        List<File> runs = createRuns(sorter, distribution.generateWords(words, seed), MERGE_FAN_IN);
+        File output = File.createTempFile("bench_kway_", ".txt");
+        return new MicroBenchmarkRunner.Benchmark() {
+            @Override
+            public Object invoke() throws Exception {
+                sorter.kWayMerge(runs, output.getPath());
+                return output.length();
+            }
+
+            @Override
+            public void close() {
+                runs.forEach(File::delete);
+                output.delete();
+            }
+        };
+    }
+
+    private static MicroBenchmarkRunner.Benchmark mergeTwoFilesBenchmark(WordLengthDistribution distribution,
+                                                                        int words, long seed) throws IOException {
+        // Сливает две серии через OneWayMergeSort.mergeTwoFiles (метод удаляет входные файлы)
+        OneWayMergeSort sorter = new OneWayMergeSort();
+        List<File> runs = createRuns(sorter, distribution.generateWords(words, seed), 2);
+        return new MicroBenchmarkRunner.Benchmark() {
+            private File first;
+            private File second;
+            private File result;
+
+            @Override
+            public void prepareInvocation() throws IOException {
+                first = copyToTemp(runs.get(0));
+                second = copyToTemp(runs.get(1));
+            }
+
+            @Override
+            public Object invoke() throws Exception {
+                result = sorter.mergeTwoFiles(first, second, "bench_twoway_");
+                return result;
+            }
+
+            @Override
+            public void cleanupInvocation() {
+                result.delete();
+            }
+
+            @Override
+            public void close() {
+                runs.forEach(File::delete);
+            }
+        };
+    }
+
+    private static MicroBenchmarkRunner.Benchmark replacementSelectionBenchmark(WordLengthDistribution distribution,
+                                                                               int words, long seed) throws IOException {
+        // Строит серии замещающим выбором из входного файла
+        ReplacementSelectionSort sorter = new ReplacementSelectionSort();
+        File input = writeInput(distribution, words, seed);
+        return new MicroBenchmarkRunner.Benchmark() {
+            private List<File> series;
+
+            @Override
+            public Object invoke() throws Exception {
+                series = sorter.replacementSelectionSort(input.getPath());
+                return series;
+            }
+
+            @Override
+            public void cleanupInvocation() {
+                series.forEach(File::delete);
+            }
+
+            @Override
+            public void close() {
+                input.delete();
+            }
+        };
+    }
+
+    private static MicroBenchmarkRunner.Benchmark sortWithBucketsBenchmark(WordLengthDistribution distribution,
+                                                                          int words, long seed) throws IOException {
+        // Распределяет слова по корзинам и сортирует их через BucketSort.sortWithBuckets
+        BucketSort sorter = new BucketSort();
+        File input = writeInput(distribution, words, seed);
+        File output = File.createTempFile("bench_bucket_", ".txt");
+        return new MicroBenchmarkRunner.Benchmark() {
+            @Override
+            public Object invoke() throws Exception {
+                sorter.sortWithBuckets(input.getPath(), output.getPath(), input.length());
+                return output.length();
+            }
+
+            @Override
+            public void close() {
+                input.delete();
+                output.delete();
+            }
+        };
+    }
+
+    private static List<File> createRuns(BaseExternalSorter sorter, List<String> words, int count) throws IOException {
+        // Делит слова на count частей и записывает каждую как отсортированную серию
+        List<File> runs = new ArrayList<>();
+        int size = (words.size() + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            List<String> part = new ArrayList<>(words.subList(Math.min(i * size, words.size()),
+                    Math.min((i + 1) * size, words.size())));
+            runs.add(sorter.createSortedTempFile(part, "bench_run_"));
+        }
+        return runs;
+    }
+
+    private static File writeInput(WordLengthDistribution distribution, int words, long seed) throws IOException {
+        // Записывает сгенерированный текст во временный входной файл
+        File input = File.createTempFile("bench_input_", ".txt");
+        input.deleteOnExit();
+        String text = WordLengthDistribution.toText(distribution.generateWords(words, seed), WORDS_PER_LINE);
+        Files.write(input.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return input;
+    }
+
+    private static File copyToTemp(File source) throws IOException {
+        // Копирует серию во временный файл
+        File copy = File.createTempFile("bench_copy_", ".tmp");
+        copy.deleteOnExit();
+        Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Запускает выбранные бенчмарки и выводит таблицу результатов
+        String filter = "";
+        String distributionName = "all";
+        int words = 200_000;
+        int warmup = 5;
+        int iterations = 10;
+        int forks = 1;
+        long seed = 42;
+        File csv = null;
+        String childBenchmark = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--benchmark": filter = args[++i]; break;
+                case "--distribution": distributionName = args[++i]; break;
+                case "--words": words = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--forks": forks = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--csv": csv = new File(args[++i]); break;
+                case "--child":
+                    childBenchmark = args[++i];
+                    distributionName = args[++i];
+                    break;
+                default:
+                    System.err.println(USAGE);
+                    System.exit(2);
+            }
+        }
+
+        Map<String, MicroBenchmarkRunner.BenchmarkFactory> benchmarks = createBenchmarks();
+        if (childBenchmark != null) {
+            // Режим дочерней JVM: выполняет один бенчмарк и печатает замеры
+            MicroBenchmarkRunner runner = new MicroBenchmarkRunner(warmup, iterations, 0, words, seed);
+            double[] samples = runner.measure(benchmarks.get(childBenchmark),
+                    WordLengthDistribution.valueOf(distributionName));
+            System.out.println(MicroBenchmarkRunner.RESULT_PREFIX + MicroBenchmarkRunner.formatSamples(samples));
+            return;
+        }
+
+        List<WordLengthDistribution> distributions = new ArrayList<>();
+        if ("all".equalsIgnoreCase(distributionName)) {
+            distributions.addAll(List.of(WordLengthDistribution.values()));
+        } else {
+            distributions.add(WordLengthDistribution.valueOf(distributionName.toUpperCase(Locale.ROOT)));
+        }
+
+        MicroBenchmarkRunner runner = new MicroBenchmarkRunner(warmup, iterations, forks, words, seed);
+        List<MicroBenchmarkRunner.Result> results = new ArrayList<>();
+        for (Map.Entry<String, MicroBenchmarkRunner.BenchmarkFactory> entry : benchmarks.entrySet()) {
+            if (!entry.getKey().contains(filter)) {
+                continue;
+            }
+            for (WordLengthDistribution distribution : distributions) {
+                System.err.println("# " + entry.getKey() + " [" + distribution.name().toLowerCase(Locale.ROOT) + "]");
+                results.add(runner.run(entry.getKey(), entry.getValue(), distribution));
+            }
+        }
+
+        MicroBenchmarkRunner.printTable(results);
+        if (csv != null) {
+            MicroBenchmarkRunner.writeCsv(results, csv);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public enum WordLengthDistribution {
+    // Короткие слова из 1-4 символов (много одинаковых префиксов)
+    SHORT {
+        @Override
+        int nextLength(Random random) {
+            return 1 + random.nextInt(4);
+        }
+    },
+    // Длины слов, близкие к естественному языку (в среднем около 5 символов)
+    NATURAL {
+        private final int[] weights = {3, 17, 21, 16, 11, 9, 8, 6, 4, 3, 2};
+
+        @Override
+        int nextLength(Random random) {
+            int value = random.nextInt(100);
+            for (int i = 0; i < weights.length; i++) {
+                value -= weights[i];
+                if (value < 0) {
+                    return i + 1;
+                }
+            }
+            return weights.length + random.nextInt(8);
+        }
+    },
+    // Длинные слова из 16-64 символов (дорогие сравнения и копирование)
+    LONG {
+        @Override
+        int nextLength(Random random) {
+            return 16 + random.nextInt(49);
+        }
+    };
+
+    abstract int nextLength(Random random);
+    // Возвращает длину следующего слова
+
+    List<String> generateWords(int count, long seed) {
+        // Генерирует воспроизводимый набор слов (около 10% с заглавной буквы)
+        Random random = new Random(seed ^ ordinal());
+        List<String> words = new ArrayList<>(count);
+        char[] buffer = new char[128];
+        for (int i = 0; i < count; i++) {
+            int length = nextLength(random);
+            for (int j = 0; j < length; j++) {
+                buffer[j] = (char) ('a' + random.nextInt(26));
+            }
+            if (random.nextInt(10) == 0) {
+                buffer[0] = Character.toUpperCase(buffer[0]);
+            }
+            words.add(new String(buffer, 0, length));
+        }
+        return words;
+    }
+
+    static String toText(List<String> words, int wordsPerLine) {
+        // Собирает слова в текст по несколько слов в строке
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words.size(); i++) {
+            builder.append(words.get(i));
+            builder.append((i + 1) % wordsPerLine == 0 ? '\n' : ' ');
+        }
+        return builder.toString();
+    }
+}
\ No newline at end of file
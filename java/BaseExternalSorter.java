@@ -1,38 +1,199 @@
 import java.awt.Color;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 public abstract class BaseExternalSorter implements ExternalSortAlgorithm {
-    // Максимальный размер данных для обработки в памяти
-    protected static final int MAX_MEMORY_SIZE = 250 * 1024 * 1024;
     // Интервал обновления прогресса (количество обработанных элементов)
     protected static final int PROGRESS_UPDATE_INTERVAL = 10000;
+    // Минимальный размер чанка: меньшие чанки дают слишком много серий для слияния
+    private static final long MIN_CHUNK_BYTES = 1024 * 1024;
+    // Минимальный размер диапазона входного файла, который разбирается отдельным потоком
+    private static final long MIN_INPUT_RANGE_BYTES = 8 * 1024 * 1024;
+    // Границы буфера чтения одной серии при слиянии: меньшие буферы превращают слияние
+    // в случайный доступ к диску, большие не дают заметного выигрыша
+    private static final int MIN_MERGE_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_MERGE_BUFFER_BYTES = 4 * 1024 * 1024;
 
-    // Ссылка на GUI для обновления прогресса
-    protected Coursework gui;
+    // Текущее задание на сортировку (входной файл, лимит памяти, директория временных файлов)
+    protected SortJob job;
+    // Счетчики прогресса текущего задания, которые опрашивает интерфейс
+    protected SortProgress progress = new SortProgress();
+    // Счетчики прочитанных и записанных байт текущего задания
+    protected SortStatistics statistics = new SortStatistics();
 
     public BaseExternalSorter() {
         // Конструктор по умолчанию
     }
 
-    public void setGUI(Coursework gui) {
-        // Устанавливает ссылку на GUI для обновления прогресса
-        this.gui = gui;
+    protected void startJob(SortJob job) {
+        // Запоминает задание, с которым работает алгоритм
+        this.job = job;
+        this.progress = job.getProgress();
+        this.statistics = job.getStatistics();
+        statistics.setSpillCodec(job.getSpillCodec());
+        progress.start();
     }
 
-    protected File createSortedTempFile(List<String> words, String filename) throws IOException {
-        // Сортирует список слов и сохраняет их во временный файл
-        Collections.sort(words, String.CASE_INSENSITIVE_ORDER);
+    protected void finishJob() {
+        // Отмечает завершение работы алгоритма
+        progress.finish(getAlgorithmName() + " завершен!");
+    }
+
+    protected long getMemoryBudget() {
+        // Возвращает лимит памяти для текущего задания: не больше, чем распорядитель памяти
+        // может выдать всем сортировкам вместе при текущем размере кучи
+        long budget = job != null ? job.getMemoryBudget() : SortJob.DEFAULT_MEMORY_BUDGET;
+        return Math.min(budget, MemoryGovernor.shared().getCapacity());
+    }
+
+    protected MemoryGovernor.Reservation reserveMemory(long requested, long minimum) throws IOException {
+        // Берет у общего распорядителя от minimum до requested байт (не больше лимита задания);
+        // резерв нужно закрыть, когда данные больше не держатся в памяти
+        return MemoryGovernor.shared().reserve(Math.min(requested, getMemoryBudget()), minimum);
+    }
+
+    protected int getMergeFanIn() {
+        // Количество серий в одном слиянии: каждой серии и выходному файлу нужен буфер
+        // не меньше MIN_MERGE_BUFFER_BYTES, и открытых файлов не больше, чем разрешено заданием
+        int maxFanIn = job != null ? job.getMaxMergeFanIn() : SortJob.DEFAULT_MAX_MERGE_FAN_IN;
+        long byBudget = getMemoryBudget() / MIN_MERGE_BUFFER_BYTES - 1;
+        return (int) Math.max(2, Math.min(maxFanIn, byBudget));
+    }
+
+    protected int getMergeThreads() {
+        // Количество потоков финального слияния из задания
+        return job != null ? job.getMergeThreads() : Runtime.getRuntime().availableProcessors();
+    }
 
-        File tempFile = File.createTempFile(filename, ".tmp");
+    protected int getSortThreads() {
+        // Количество потоков разбора входного файла и сортировки в памяти из задания
+        return job != null ? job.getSortThreads() : Runtime.getRuntime().availableProcessors();
+    }
+
+    protected ForkJoinPool createSortPool() {
+        // Пул потоков сортировки в памяти: чанки сортируются в нем параллельно,
+        // а большой чанк делится на участки, которые сортируют несколько потоков
+        return new ForkJoinPool(getSortThreads());
+    }
+
+    protected int getMergeBufferSize(int fanIn, long memory) {
+        // Размер буфера чтения каждой серии (и буфера записи) при слиянии fanIn серий в memory байтах
+        long perRun = memory / (fanIn + 1);
+        return (int) Math.max(MIN_MERGE_BUFFER_BYTES, Math.min(MAX_MERGE_BUFFER_BYTES, perRun));
+    }
+
+    protected File createTempFile(String prefix) throws IOException {
+        // Создает временный файл в директории, указанной в задании
+        File tempFile = File.createTempFile(prefix, ".tmp", job != null ? job.getTempDir() : null);
         tempFile.deleteOnExit();
+        return tempFile;
+    }
+
+    protected WordInput openWordSource(File file) throws IOException {
+        // Открывает вход для разбора на слова. Если задание получает слова из общего чтения
+        // входного файла (параллельный режим сравнения), первый проход по входу читает их оттуда
+        WordInput shared = job != null ? job.takeSharedInput() : null;
+        return shared != null ? shared : openFileWordSource(file);
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
-            for (String word : words) {
-                writer.write(word);
-                writer.newLine();
+    protected WordInput openWordSource(String path) throws IOException {
+        return openWordSource(new File(path));
+    }
+
+    protected WordInput openWordSource(File file, long start, long end) throws IOException {
+        // Открывает диапазон байт входного файла (см. WordSource.splitRanges); весь файл
+        // открывается через openWordSource, чтобы использовать общее чтение
+        if (start == 0 && end >= file.length()) {
+            return openWordSource(file);
+        }
+        return openFileWordSource(file, start, end);
+    }
+
+    protected WordSource openFileWordSource(File file) throws IOException {
+        // Открывает входной файл для разбора на слова, учитывая прочитанные байты в статистике.
+        // Слово хранится в буфере разбора, в строке (до двух байт на символ) и в блоке серии,
+        // поэтому одно слово может занимать не больше четверти лимита памяти
+        return new WordSource(file, statistics, getMemoryBudget() / 4);
+    }
+
+    protected WordSource openFileWordSource(File file, long start, long end) throws IOException {
+        // Открывает диапазон байт входного файла в обход общего чтения
+        return new WordSource(file, statistics, getMemoryBudget() / 4, start, end);
+    }
+
+    protected int getInputRangeCount(long fileSize) {
+        // Количество диапазонов, которые разбираются параллельно: по одному на ядро,
+        // но маленькие файлы не делятся. Общее чтение отдает слова одним потоком
+        if (job != null && job.hasSharedInput()) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(getSortThreads(), fileSize / MIN_INPUT_RANGE_BYTES));
+    }
+
+    protected BufferedWriter openWriter(File file) throws IOException {
+        // Открывает файл на запись, учитывая записанные байты в статистике
+        return new BufferedWriter(new OutputStreamWriter(statistics.countWrites(new FileOutputStream(file))));
+    }
+
+    protected BufferedWriter openWriter(String path) throws IOException {
+        return openWriter(new File(path));
+    }
+
+    protected RunWriter createRunWriter(File file, boolean sorted, int bufferBytes) throws IOException {
+        // Открывает временный файл в двоичном формате серий (см. RunFormat); блоки сжимаются
+        // кодеком из задания, а читатель узнает кодек из заголовка серии
+        return createRunWriter(file, sorted, bufferBytes, RunFormat.BLOCK_SIZE);
+    }
+
+    protected RunWriter createRunWriter(File file, boolean sorted, int bufferBytes, int blockSize) throws IOException {
+        // Открывает временный файл серии с блоками заданного размера: маленькие блоки нужны, когда
+        // одновременно пишется много серий и буферы всех серий должны поместиться в лимит памяти
+        BlockCodec codec = BlockCodec.create(job != null ? job.getSpillCodec() : SortJob.DEFAULT_SPILL_CODEC);
+        return new RunWriter(file, statistics, sorted, bufferBytes, blockSize, codec);
+    }
+
+    protected RunReader openRun(File file, int bufferBytes) throws IOException {
+        // Открывает серию на чтение крупными блоками заданного размера
+        return new RunReader(file, statistics, bufferBytes);
+    }
+
+    protected TextRecordWriter openTextOutput(File file, int bufferBytes) throws IOException {
+        // Открывает выходной текстовый файл, в который слова серий пишутся по одному в строке
+        return new TextRecordWriter(new BufferedOutputStream(
+                statistics.countWrites(new FileOutputStream(file)), bufferBytes));
+    }
+
+    protected void writeRunAsText(File run, String target) throws IOException {
+        // Переписывает единственную серию в выходной текстовый файл
+        try (RunReader reader = openRun(run, MIN_MERGE_BUFFER_BYTES);
+             TextRecordWriter writer = openTextOutput(new File(target), MIN_MERGE_BUFFER_BYTES)) {
+            while (reader.next()) {
+                writer.write(reader.buffer(), reader.offset(), reader.length());
             }
         }
+    }
+
+    protected File createSortedTempFile(List<String> words, String filename) throws IOException {
+        // Сортирует список слов и сохраняет их во временный файл
+        WordArena chunk = new WordArena(Long.MAX_VALUE);
+        for (String word : words) {
+            byte[] bytes = ByteWordOrder.encode(word);
+            chunk.add(bytes, 0, bytes.length);
+        }
+        chunk.sort();
+        return writeTempFile(chunk, filename);
+    }
+
+    protected File writeTempFile(WordArena sortedWords, String filename) throws IOException {
+        // Сохраняет отсортированный чанк во временный файл
+        File tempFile = createTempFile(filename);
+
+        try (RunWriter writer = createRunWriter(tempFile, true, RunFormat.BLOCK_SIZE)) {
+            sortedWords.writeSorted(writer);
+        }
 
         return tempFile;
     }
@@ -49,31 +210,18 @@ public abstract class BaseExternalSorter implements ExternalSortAlgorithm {
         }
     }
 
-    protected int getMemorySize(String word) {
-        // Вычисляет размер слова в байтах
-        return word.getBytes().length;
-    }
+    protected WordArena readChunkFromFile(WordInput source, long maxBytes) throws IOException {
+        // Читает порцию слов из файла; слова и их индекс вместе занимают не больше maxBytes байт
+        WordArena chunk = new WordArena(maxBytes);
 
-    protected List<String> readChunkFromFile(BufferedReader reader, long maxBytes) throws IOException {
-        // Читает порцию данных из файла, не превышая заданный лимит памяти
-        List<String> chunk = new ArrayList<>();
-        long currentSize = 0;
-        String line;
-
-        while ((line = reader.readLine()) != null && currentSize < maxBytes) {
-            String[] words = line.split("\\s+");
-            for (String word : words) {
-                if (!word.trim().isEmpty()) {
-                    int wordSize = getMemorySize(word);
-                    if (currentSize + wordSize <= maxBytes) {
-                        chunk.add(word);
-                        currentSize += wordSize;
-                    } else {
-                        // Прекращает чтение при достижении лимита памяти
-                        return chunk;
-                    }
-                }
+        while (source.next()) {
+            int length = source.utf8Length();
+            if (!chunk.fits(length)) {
+                // Слово, которое не поместилось, станет первым словом следующей порции
+                source.pushBack();
+                break;
             }
+            chunk.add(source.utf8Buffer(), source.utf8Offset(), length);
         }
 
         return chunk;
@@ -81,99 +229,486 @@ public abstract class BaseExternalSorter implements ExternalSortAlgorithm {
 
     protected List<File> splitFileIntoSortedChunks(String inputFile, String chunkPrefix,
                                                    int progressStart, int progressRange) throws IOException {
-        // Разделяет файл на отсортированные части (чанки) для дальнейшей обработки
+        // Разделяет файл на отсортированные части (чанки) для дальнейшей обработки.
+        // Чтение, сортировка и запись идут конвейером: файл делится на диапазоны, которые разбираются
+        // на слова параллельно, пул потоков сортирует прочитанные чанки, а один поток записывает
+        // отсортированные на диск
         File file = new File(inputFile);
         List<File> tempFiles = new ArrayList<>();
 
         if (!file.exists()) {
-            if (gui != null) {
-                gui.updateStatus("ОШИБКА: Файл не найден - " + inputFile);
-            }
+            progress.startPhase("ОШИБКА: Файл не найден - " + inputFile, progressStart, progressStart, SortProgress.Unit.STEPS, 0);
             return tempFiles;
         }
 
         long fileSize = file.length();
-        long processedBytes = 0;
-        int chunkCount = 0;
+        // Лимит памяти делится между всеми чанками, которые одновременно находятся в конвейере;
+        // память под каждый чанк выдает распорядитель, поэтому при нехватке памяти чанки становятся меньше
+        int maxInFlight = (int) Math.max(1, Math.min(getSortThreads() + 2, getMemoryBudget() / MIN_CHUNK_BYTES));
+        long maxMemorySize = getMemoryBudget() / maxInFlight;
+        // Каждый читающий поток держит заполняемый чанк, поэтому потоков не больше, чем мест в конвейере
+        int rangeCount = Math.min(maxInFlight, getInputRangeCount(fileSize));
+        long[] bounds = WordSource.splitRanges(fileSize, rangeCount);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // Первая ошибка разбора, сортировки или записи; после нее остальные диапазоны останавливаются
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger chunkCount = new AtomicInteger();
+        progress.startPhase("Разделение файла", progressStart, progressStart + progressRange,
+                SortProgress.Unit.BYTES, fileSize);
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            List<String> chunk = new ArrayList<>();
-            long currentChunkSize = 0;
+        ExecutorService readers = Executors.newFixedThreadPool(rangeCount);
+        ForkJoinPool sorters = createSortPool();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<List<File>>> ranges = new ArrayList<>();
+            for (int i = 0; i < rangeCount; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                ranges.add(readers.submit(() -> splitRange(file, start, end, maxMemorySize, chunkPrefix,
+                        chunkCount, sorters, writer, inFlight, failure)));
+            }
 
+            // Серии сохраняют порядок чанков во входном файле
+            for (Future<List<File>> range : ranges) {
+                try {
+                    tempFiles.addAll(await(range));
+                } catch (IOException | RuntimeException e) {
+                    // Ошибка уже записана в failure или диапазон остановлен из-за ошибки в другом диапазоне
+                    failure.compareAndSet(null, e);
+                }
+            }
+            if (failure.get() != null) {
+                cleanupTempFiles(tempFiles);
+                throw rethrow(failure.get());
+            }
+        } finally {
+            readers.shutdown();
+            sorters.shutdown();
+            writer.shutdown();
+        }
+
+        progress.setDone(fileSize);
+        return tempFiles;
+    }
+
+    private List<File> splitRange(File file, long start, long end, long maxMemorySize, String chunkPrefix,
+                                  AtomicInteger chunkCount, ForkJoinPool sorters, ExecutorService writer,
+                                  Semaphore inFlight, AtomicReference<Throwable> failure) throws IOException {
+        // Разбирает диапазон файла на чанки и отдает их в конвейер; возвращает серии диапазона по порядку
+        List<CompletableFuture<File>> pending = new ArrayList<>();
+        try (WordInput source = openWordSource(file, start, end)) {
+            long reported = start;
             while (true) {
-                List<String> newWords = readChunkFromFile(reader, MAX_MEMORY_SIZE - currentChunkSize);
-                if (newWords.isEmpty()) {
+                MemoryGovernor.Reservation memory = acquireChunkSlot(inFlight, maxMemorySize, failure);
+                WordArena chunk;
+                try {
+                    chunk = readChunkFromFile(source, memory.getBytes());
+                } catch (IOException | RuntimeException e) {
+                    releaseChunkSlot(inFlight, memory);
+                    throw e;
+                }
+                if (chunk.isEmpty()) {
+                    releaseChunkSlot(inFlight, memory);
                     break;
                 }
 
-                chunk.addAll(newWords);
-                currentChunkSize += calculateChunkSize(newWords);
-                processedBytes += calculateChunkSize(newWords);
+                // Обновляет счетчик прочитанных байт и отдает заполненный чанк в конвейер
+                long done = Math.min(source.position(), end);
+                progress.addDone(done - reported);
+                reported = done;
+                pending.add(submitChunk(chunk, chunkPrefix + chunkCount.incrementAndGet(), sorters, writer,
+                        inFlight, memory, failure));
+            }
+            progress.addDone(end - reported);
 
-                // Обновляет прогресс чтения файла
-                int progress = progressStart + (int)((processedBytes * progressRange) / fileSize);
-                updateProgress(progress);
+            List<File> runs = new ArrayList<>();
+            for (CompletableFuture<File> future : pending) {
+                runs.add(awaitChunk(future));
+            }
+            return runs;
+        } catch (Throwable e) {
+            // Останавливает остальные диапазоны, дожидается своих чанков и удаляет уже записанные серии
+            if (!(e instanceof CancellationException)) {
+                failure.compareAndSet(null, e);
+            }
+            for (CompletableFuture<File> future : pending) {
+                File tempFile = future.exceptionally(error -> null).join();
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+            throw e;
+        }
+    }
 
-                // Создает новый чанк при заполнении памяти или малом количестве слов
-                if (currentChunkSize >= MAX_MEMORY_SIZE * 0.9 || newWords.size() < 1000) {
-                    if (!chunk.isEmpty()) {
-                        File tempFile = createSortedTempFile(chunk, chunkPrefix + (++chunkCount));
-                        tempFiles.add(tempFile);
+    private CompletableFuture<File> submitChunk(WordArena chunk, String filename, ForkJoinPool sorters,
+                                                ExecutorService writer, Semaphore inFlight,
+                                                MemoryGovernor.Reservation memory,
+                                                AtomicReference<Throwable> failure) {
+        // Сортирует чанк в пуле потоков, затем записывает его потоком записи и освобождает место в конвейере
+        CompletableFuture<File> future = CompletableFuture
+                .supplyAsync(() -> {
+                    chunk.sort(sorters);
+                    return chunk;
+                }, sorters)
+                .thenApplyAsync(sorted -> {
+                    try {
+                        return writeTempFile(sorted, filename);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, writer);
+        future.whenComplete((file, error) -> {
+            if (error != null) {
+                failure.compareAndSet(null, error);
+            }
+            releaseChunkSlot(inFlight, memory);
+        });
+        return future;
+    }
 
-                        if (gui != null) {
-                            gui.updateStatus(getAlgorithmName() + ": создан чанк " + chunkCount);
-                        }
+    private MemoryGovernor.Reservation acquireChunkSlot(Semaphore inFlight, long maxMemorySize,
+                                                        AtomicReference<Throwable> failure) throws IOException {
+        // Ждет, пока в конвейере освободится место под новый чанк, и берет память под него;
+        // прекращает чтение, если сортировка, запись или разбор другого диапазона завершились ошибкой
+        while (true) {
+            if (failure.get() != null) {
+                throw new CancellationException("разделение файла прервано");
+            }
+            try {
+                if (inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("разделение файла прервано");
+            }
+        }
+        try {
+            return reserveMemory(maxMemorySize, MIN_CHUNK_BYTES);
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private static void releaseChunkSlot(Semaphore inFlight, MemoryGovernor.Reservation memory) {
+        // Возвращает память чанка и освобождает место в конвейере
+        memory.close();
+        inFlight.release();
+    }
+
+    private File awaitChunk(CompletableFuture<File> future) throws IOException {
+        // Возвращает записанную серию, пробрасывая ошибку сортировки или записи
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static IOException rethrow(Throwable error) throws IOException {
+        // Пробрасывает ошибку потока конвейера с ее исходным типом
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) error).getCause();
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IOException(error);
+    }
+
+    protected void mergeRuns(List<File> runs, String outputFile, String phase,
+                             int progressStart, int progressEnd) throws IOException {
+        // Сливает отсортированные серии в выходной файл. Если серий больше, чем можно слить
+        // за один проход, сначала группы серий сливаются в промежуточные серии
+        if (runs.isEmpty()) {
+            return;
+        }
 
-                        chunk.clear();
-                        currentChunkSize = 0;
+        if (runs.size() == 1) {
+            // Переписывает единственную серию напрямую в выходной файл
+            writeRunAsText(runs.get(0), outputFile);
+            return;
+        }
+
+        // Память под буферы слияния выдает распорядитель: при нехватке памяти буферы становятся меньше
+        int fanIn = getMergeFanIn();
+        long memoryNeeded = (long) (fanIn + 1) * getMergeBufferSize(fanIn, getMemoryBudget());
+        try (MemoryGovernor.Reservation memory = reserveMemory(memoryNeeded,
+                (long) (fanIn + 1) * MIN_MERGE_BUFFER_BYTES)) {
+            mergeRuns(runs, outputFile, phase, progressStart, progressEnd, fanIn,
+                    getMergeBufferSize(fanIn, memory.getBytes()));
+        }
+    }
+
+    private void mergeRuns(List<File> runs, String outputFile, String phase, int progressStart, int progressEnd,
+                           int fanIn, int bufferSize) throws IOException {
+        // Сливает серии группами не больше fanIn с буферами размера bufferSize
+        int passes = countMergePasses(runs.size(), fanIn);
+        int passRange = (progressEnd - progressStart) / passes;
+
+        List<File> current = runs;
+        List<File> intermediate = new ArrayList<>();
+        try {
+            for (int pass = 1; pass < passes; pass++) {
+                // Промежуточный проход: каждая группа из fanIn серий становится одной серией
+                List<File> next = new ArrayList<>();
+                int from = progressStart + (pass - 1) * passRange;
+                progress.startPhase("Промежуточное слияние " + current.size() + " серий (проход " + pass + ")",
+                        from, from + passRange, SortProgress.Unit.STEPS, (current.size() + fanIn - 1) / fanIn);
+                for (int i = 0; i < current.size(); i += fanIn) {
+                    List<File> group = current.subList(i, Math.min(i + fanIn, current.size()));
+                    if (group.size() == 1) {
+                        next.add(group.get(0));
+                    } else {
+                        File merged = createTempFile("merge_pass" + pass + "_");
+                        intermediate.add(merged);
+                        mergeGroup(group, createRunWriter(merged, true, bufferSize), bufferSize, false);
+                        next.add(merged);
+
+                        // Промежуточные серии предыдущего прохода больше не нужны
+                        for (File file : group) {
+                            if (intermediate.remove(file)) {
+                                file.delete();
+                            }
+                        }
                     }
+                    progress.addDone(1);
                 }
+                current = next;
+            }
+
+            progress.startPhase(phase, progressStart + (passes - 1) * passRange, progressEnd,
+                    SortProgress.Unit.WORDS, countRunRecords(current));
 
-                updateTimeLabel();
+            // Финальное слияние делится на диапазоны ключей, если есть несколько потоков и достаточно данных
+            long totalBytes = 0;
+            for (File run : current) {
+                totalBytes += run.length();
             }
+            int partitions = (int) Math.min(getMergeThreads(), totalBytes / MIN_CHUNK_BYTES);
+            if (partitions > 1) {
+                parallelMerge(current, new File(outputFile), partitions,
+                        Math.max(MIN_MERGE_BUFFER_BYTES, bufferSize / partitions));
+            } else {
+                mergeGroup(current, openTextOutput(new File(outputFile), bufferSize), bufferSize, true);
+            }
+        } finally {
+            cleanupTempFiles(intermediate);
+        }
+    }
+
+    private static int countMergePasses(int runCount, int fanIn) {
+        // Количество проходов слияния, после которых остается одна серия
+        int passes = 1;
+        for (int count = runCount; count > fanIn; count = (count + fanIn - 1) / fanIn) {
+            passes++;
+        }
+        return passes;
+    }
 
-            // Обрабатывает оставшиеся слова как последний чанк
-            if (!chunk.isEmpty()) {
-                File tempFile = createSortedTempFile(chunk, chunkPrefix + (++chunkCount));
-                tempFiles.add(tempFile);
-                if (gui != null) {
-                    gui.updateStatus(getAlgorithmName() + ": создан финальный чанк");
+    private void parallelMerge(List<File> runs, File output, int partitions, int bufferSize) throws IOException {
+        // Делит пространство ключей разделителями, выбранными по индексам серий, находит границы
+        // диапазонов в каждой серии по индексу, сливает диапазоны параллельно в отдельные
+        // текстовые сегменты и склеивает сегменты в выходной файл
+        List<RunFormat.Info> infos = new ArrayList<>();
+        for (File run : runs) {
+            infos.add(RunFormat.readIndex(run));
+        }
+        List<byte[]> splitters = RunPartitioner.sampleSplitters(infos, partitions);
+        List<long[]> boundaries = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            boundaries.add(RunPartitioner.splitRecords(runs.get(i), infos.get(i), splitters, statistics));
+        }
+
+        int segmentCount = splitters.size() + 1;
+        ExecutorService mergers = Executors.newFixedThreadPool(Math.min(segmentCount, getMergeThreads()));
+        List<File> segments = new ArrayList<>();
+        try {
+            try {
+                List<Future<File>> pending = new ArrayList<>();
+                for (int p = 0; p < segmentCount; p++) {
+                    File segment = createTempFile("merge_segment" + p + "_");
+                    segments.add(segment);
+                    int range = p;
+                    pending.add(mergers.submit(() -> {
+                        RecordWriter segmentOutput = openTextOutput(segment, bufferSize);
+                        List<RunReader> readers = new ArrayList<>();
+                        try {
+                            for (int i = 0; i < runs.size(); i++) {
+                                long start = boundaries.get(i)[range];
+                                long end = boundaries.get(i)[range + 1];
+                                if (start < end) {
+                                    readers.add(new RunReader(runs.get(i), infos.get(i), statistics, bufferSize,
+                                            start, end));
+                                }
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            for (RunReader reader : readers) {
+                                reader.close();
+                            }
+                            segmentOutput.close();
+                            throw e;
+                        }
+                        mergeReaders(readers, segmentOutput, true);
+                        return segment;
+                    }));
+                }
+
+                for (Future<File> future : pending) {
+                    await(future);
+                }
+            } finally {
+                // Сегменты удаляются только после того, как потоки слияния закрыли их
+                mergers.shutdownNow();
+                try {
+                    mergers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
-        }
 
-        updateProgress(progressStart + progressRange);
-        return tempFiles;
+            // Склеивает сегменты по порядку диапазонов без перекодирования
+            try (FileChannel target = new FileOutputStream(output).getChannel()) {
+                for (File segment : segments) {
+                    try (FileChannel source = new FileInputStream(segment).getChannel()) {
+                        long size = source.size();
+                        for (long position = 0; position < size; ) {
+                            position += source.transferTo(position, size - position, target);
+                        }
+                        statistics.addBytesRead(size);
+                        statistics.addBytesWritten(size);
+                    }
+                }
+            }
+        } finally {
+            cleanupTempFiles(segments);
+        }
     }
 
-    private long calculateChunkSize(List<String> words) {
-        // Вычисляет общий размер списка слов в байтах
-        long size = 0;
-        for (String word : words) {
-            size += getMemorySize(word);
+    protected static <T> T await(Future<T> future) throws IOException {
+        // Дожидается результата фоновой задачи, пробрасывая ее ошибку ввода-вывода
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("слияние прервано");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
         }
-        return size;
     }
 
-    protected long estimateTotalWords(List<File> files) throws IOException {
-        // Оценивает общее количество слов в списке файлов
-        long total = 0;
-        for (File file : files) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                while (reader.readLine() != null) {
-                    total++;
+    protected void mergeRunsInto(List<File> runs, RecordWriter output, long memory) throws IOException {
+        // Сливает серии в уже открытый выход, который остается открытым; если серий больше, чем
+        // можно слить за один проход в memory байтах, группы серий сначала сливаются в промежуточные
+        int fanIn = getMergeFanIn();
+        int bufferSize = getMergeBufferSize(fanIn, memory);
+        List<File> current = runs;
+        List<File> intermediate = new ArrayList<>();
+        try {
+            while (current.size() > fanIn) {
+                List<File> next = new ArrayList<>();
+                for (int i = 0; i < current.size(); i += fanIn) {
+                    List<File> group = current.subList(i, Math.min(i + fanIn, current.size()));
+                    File merged = createTempFile("merge_into_");
+                    intermediate.add(merged);
+                    mergeGroup(group, createRunWriter(merged, true, bufferSize), bufferSize, false);
+                    next.add(merged);
+
+                    // Промежуточные серии предыдущего прохода больше не нужны
+                    for (File file : group) {
+                        if (intermediate.remove(file)) {
+                            file.delete();
+                        }
+                    }
                 }
+                current = next;
             }
+
+            mergeGroup(current, new RecordWriter() {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    output.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() {
+                    // Выход закрывает тот, кто его открыл
+                }
+            }, bufferSize, false);
+        } finally {
+            cleanupTempFiles(intermediate);
         }
-        return total;
     }
 
-    protected abstract void updateProgress(int value);
-    protected abstract void updateTimeLabel();
+    private void mergeGroup(List<File> runs, RecordWriter output, int bufferSize, boolean reportWords) throws IOException {
+        // Сливает группу серий, читая каждую серию крупными блоками
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File run : runs) {
+                readers.add(openRun(run, bufferSize));
+            }
+        } catch (IOException e) {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            output.close();
+            throw e;
+        }
+        mergeReaders(readers, output, reportWords);
+    }
+
+    private void mergeReaders(List<RunReader> readers, RecordWriter output, boolean reportWords) throws IOException {
+        // Сливает отсортированные источники через дерево проигравших, перенося байты слов без
+        // декодирования; прогресс копится локально и добавляется пачками, поэтому метод можно
+        // вызывать из нескольких потоков
+        long pendingWords = 0;
+        try (RecordWriter writer = output;
+             LoserTreeMerger merger = new LoserTreeMerger(readers)) {
+            // Основной цикл слияния: каждое слово обходится в log2(k) сравнений без новых объектов
+            while (merger.next()) {
+                writer.write(merger.buffer(), merger.offset(), merger.length());
+
+                if (reportWords && ++pendingWords == PROGRESS_UPDATE_INTERVAL) {
+                    progress.addDone(pendingWords);
+                    pendingWords = 0;
+                }
+            }
+        }
+
+        if (reportWords) {
+            progress.addDone(pendingWords);
+        }
+    }
 
-    protected void updateProgress(int value, String status) {
-        // Обновляет прогресс с дополнительным сообщением о статусе
-        updateProgress(value);
+    protected long countRunRecords(List<File> files) throws IOException {
+        // Возвращает общее количество слов в сериях: счетчик записывается в заголовок при создании
+        // серии, поэтому читаются только заголовки, а не сами серии
+        long total = 0;
+        for (File file : files) {
+            total += RunFormat.readInfo(file).recordCount;
+        }
+        return total;
     }
 
     public abstract Color getProgressBarColor();
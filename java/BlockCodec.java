@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.util.List;
+
+interface BlockCodec {
+    // Блоки хранятся без сжатия
+    BlockCodec NONE = new BlockCodec() {
+        @Override
+        public byte getId() {
+            return RunFormat.CODEC_NONE;
+        }
+
+        @Override
+        public String getName() {
+            return "none";
+        }
+
+        @Override
+        public int maxCompressedLength(int length) {
+            return length;
+        }
+
+        @Override
+        public int compress(byte[] source, int length, byte[] target) {
+            System.arraycopy(source, 0, target, 0, length);
+            return length;
+        }
+
+        @Override
+        public void decompress(byte[] source, int sourceLength, byte[] target, int targetLength) {
+            System.arraycopy(source, 0, target, 0, targetLength);
+        }
+    };
+
+    byte getId();
+    // Идентификатор кодека, который записывается в заголовок серии
+
+    String getName();
+    // Имя кодека для командной строки и статистики
+
+    int maxCompressedLength(int length);
+    // Наибольший размер сжатого блока из length байт
+
+    int compress(byte[] source, int length, byte[] target) throws IOException;
+    // Сжимает length байт source в target и возвращает размер сжатых данных
+
+    void decompress(byte[] source, int sourceLength, byte[] target, int targetLength) throws IOException;
+    // Восстанавливает targetLength байт блока из sourceLength сжатых байт
+
+    default void close() {
+        // Освобождает ресурсы кодека (например, память zlib)
+    }
+
+    static List<String> names() {
+        // Имена доступных кодеков
+        return List.of("none", "deflate");
+    }
+
+    static BlockCodec create(String name) {
+        // Создает кодек по имени; у каждого писателя и читателя серии свой экземпляр
+        switch (name) {
+            case "none":
+                return NONE;
+            case "deflate":
+                return new DeflateBlockCodec();
+            default:
+                throw new IllegalArgumentException("неизвестный кодек " + name + ", доступны: " + names());
+        }
+    }
+
+    static BlockCodec create(byte id) throws IOException {
+        // Создает кодек по идентификатору из заголовка серии
+        switch (id) {
+            case RunFormat.CODEC_NONE:
+                return NONE;
+            case RunFormat.CODEC_DEFLATE:
+                return new DeflateBlockCodec();
+            default:
+                throw new IOException("неизвестный кодек серии " + id);
+        }
+    }
+}
\ No newline at end of file
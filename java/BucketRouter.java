@@ -0,0 +1,48 @@
+import java.util.List;
+
+class BucketRouter {
+    // Разделители корзин по возрастанию и префиксы их ключей (см. ByteWordOrder.prefixKey)
+    private final byte[][] splitters;
+    private final long[] keys;
+
+    BucketRouter(List<byte[]> splitters) {
+        // Разделители должны быть упорядочены по возрастанию и различны (см. RunPartitioner.chooseSplitters)
+        this.splitters = splitters.toArray(new byte[0][]);
+        this.keys = new long[this.splitters.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ByteWordOrder.prefixKey(this.splitters[i], 0, this.splitters[i].length);
+        }
+    }
+
+    int getBucketCount() {
+        // Корзины слов между соседними разделителями чередуются с корзинами слов, равных разделителю:
+        // корзина 2i - слова меньше i-го разделителя (и больше предыдущего), корзина 2i+1 - равные ему
+        return 2 * splitters.length + 1;
+    }
+
+    static boolean isUniform(int bucket) {
+        // Все слова корзины равны без учета регистра: ее не нужно сортировать, порядок входа уже устойчив
+        return (bucket & 1) != 0;
+    }
+
+    int bucketOf(byte[] word, int offset, int length) {
+        // Номер корзины слова: двоичный поиск первого разделителя не меньше слова
+        long key = ByteWordOrder.prefixKey(word, offset, length);
+        int lo = 0;
+        int hi = splitters.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = ByteWordOrder.compare(key, word, offset, length,
+                    keys[mid], splitters[mid], 0, splitters[mid].length);
+            if (cmp == 0) {
+                return 2 * mid + 1;
+            }
+            if (cmp < 0) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return 2 * lo;
+    }
+}
\ No newline at end of file
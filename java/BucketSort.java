@@ -1,222 +1,488 @@
 import java.awt.Color;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class BucketSort extends BaseExternalSorter {
     private static final Color PROGRESS_COLOR = new Color(150, 0, 150);
-    private static final int INITIAL_BUCKETS = 26;
-    private static final int MEMORY_THRESHOLD = 1000000;
+    // Файл сортируется целиком в памяти, если занимает не больше этой доли лимита памяти
+    // (индекс чанка для коротких слов занимает в несколько раз больше самих слов); на такой же
+    // размер рассчитываются корзины
+    private static final int IN_MEMORY_BUDGET_DIVISOR = 4;
+    // Наименьший объем памяти, который стоит ждать у распорядителя для сортировки в памяти
+    private static final long MIN_IN_MEMORY_BYTES = 1024 * 1024;
+    // Выборка для разделителей корзин: несколько слов после случайного места в каждой из равных частей файла
+    private static final int SAMPLE_POSITIONS = 256;
+    private static final int WORDS_PER_SAMPLE_POSITION = 4;
+    // Корзин вдвое больше, чем нужно по размеру файла, чтобы неточность выборки не делала корзины больше памяти
+    private static final int BUCKET_OVERSAMPLING = 2;
+    // Наибольшее число корзин за одно распределение; буферы записи всех файлов корзин занимают
+    // не больше восьмой части лимита памяти, для чего блоки файлов корзин делаются меньше обычных,
+    // но не меньше MIN_SPILL_BLOCK_BYTES
+    private static final int MAX_BUCKETS = 256;
+    private static final int WRITER_BUDGET_DIVISOR = 8;
+    private static final int MIN_SPILL_BLOCK_BYTES = 1024;
+    // Глубина повторного деления корзины, после которой корзина сортируется внешним слиянием
+    private static final int MAX_SPLIT_DEPTH = 8;
+    // Наименьшая память одной из одновременно сортируемых корзин: при меньшей памяти корзины
+    // получаются такими мелкими, что их деление обходится дороже, чем выигрыш от параллельности
+    private static final long MIN_BUCKET_MEMORY_BYTES = 8 * 1024 * 1024;
 
     @Override
-    public void sort(String inputFile, String outputFile, Coursework gui) throws IOException {
+    public void sort(SortJob job) throws IOException {
         // Основной метод сортировки, выбирает стратегию в зависимости от размера файла
-        this.gui = gui;
-        updateProgress(0, getAlgorithmName() + ": запуск...");
+        startJob(job);
+        String inputFile = job.getInputFile();
+        String outputFile = job.getOutputFile();
 
         File input = new File(inputFile);
         if (!input.exists() || input.length() == 0) {
-            updateProgress(0, "Bucket Sort: файл не найден или пуст");
+            progress.finish("Bucket Sort: файл не найден или пуст");
             return;
         }
 
         long fileSize = input.length();
-        long totalWords = countWords(inputFile);
 
-        // Выбирает способ сортировки в зависимости от количества слов
-        if (totalWords < MEMORY_THRESHOLD) {
-            sortInMemory(inputFile, outputFile, totalWords);
+        // Выбирает способ сортировки в зависимости от размера файла; если слова все же
+        // не поместились в выданную память, уже прочитанные слова и остаток файла сортируются корзинами
+        if (fileSize <= getMemoryBudget() / IN_MEMORY_BUDGET_DIVISOR) {
+            List<Bucket> buckets = sortInMemory(inputFile, outputFile, fileSize);
+            if (buckets != null) {
+                sortBuckets(buckets, outputFile);
+            }
         } else {
             sortWithBuckets(inputFile, outputFile, fileSize);
         }
 
-        updateProgress(100, getAlgorithmName() + " завершен!");
-        updateTimeLabel();
+        finishJob();
+    }
+
+    private List<Bucket> sortInMemory(String inputFile, String outputFile, long fileSize) throws IOException {
+        // Сортирует файл целиком в оперативной памяти; null - файл отсортирован, иначе корзины.
+        // Память просится по размеру файла, а не весь лимит: в параллельном режиме остальные алгоритмы
+        // читают тот же общий поток слов и не должны ждать памяти, пока этот алгоритм его читает
+        long needed = Math.max(MIN_IN_MEMORY_BYTES, fileSize * IN_MEMORY_BUDGET_DIVISOR);
+        try (MemoryGovernor.Reservation memory = reserveMemory(needed, MIN_IN_MEMORY_BYTES)) {
+            return sortInMemory(inputFile, outputFile, fileSize, memory.getBytes());
+        }
     }
 
-    private void sortInMemory(String inputFile, String outputFile, long totalWords) throws IOException {
-        // Сортирует файл целиком в оперативной памяти
-        updateProgress(10, "Загрузка в память...");
-        List<String> allWords = new ArrayList<>();
+    private List<Bucket> sortInMemory(String inputFile, String outputFile, long fileSize,
+                                      long maxBytes) throws IOException {
+        // Загружает, сортирует и записывает слова, занимающие не больше maxBytes байт
+        progress.startPhase("Загрузка в память", 0, 50, SortProgress.Unit.BYTES, fileSize);
+        WordArena allWords = new WordArena(maxBytes);
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
+        try (WordInput source = openWordSource(inputFile)) {
             long readWords = 0;
 
-            while ((line = reader.readLine()) != null) {
-                String[] words = line.split("\\s+");
-                for (String word : words) {
-                    if (!word.trim().isEmpty()) {
-                        allWords.add(word);
-                        readWords++;
-
-                        if (readWords % PROGRESS_UPDATE_INTERVAL == 0) {
-                            int progress = 10 + (int)((readWords * 40) / totalWords);
-                            updateProgress(progress,
-                                    String.format("Загрузка: %d/%d слов", readWords, totalWords));
-                        }
-                    }
+            while (source.next()) {
+                int length = source.utf8Length();
+                if (!allWords.fits(length)) {
+                    // Файл не поместился: слово вернется при следующем чтении, а загруженные слова
+                    // и остаток файла распределяются по корзинам без повторного чтения файла
+                    source.pushBack();
+                    progress.startPhase("Распределение по временным файлам", 0, 60, SortProgress.Unit.BYTES, fileSize);
+                    int partitions = getBucketCount(fileSize);
+                    BucketRouter router = createRouter(new File(inputFile), fileSize, partitions);
+                    File[] files = distributeWords(allWords, source, router, getSpillBlockSize(partitions, 1),
+                            0, fileSize);
+                    return collectBuckets(router, Collections.singletonList(files));
+                }
+                allWords.add(source.utf8Buffer(), source.utf8Offset(), length);
+                readWords++;
+
+                if (readWords % PROGRESS_UPDATE_INTERVAL == 0) {
+                    progress.setDone(source.position());
                 }
             }
         }
 
-        updateProgress(50, "Сортировка в памяти...");
-        // Сортирует все слова без учета регистра
-        Collections.sort(allWords, String.CASE_INSENSITIVE_ORDER);
-
-        updateProgress(75, "Запись результата...");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            long writtenWords = 0;
-            for (String word : allWords) {
-                writer.write(word);
-                writer.newLine();
-                writtenWords++;
+        progress.startPhase("Сортировка в памяти", 50, 75, SortProgress.Unit.STEPS, 0);
+        // Сортирует все слова без учета регистра во всех потоках сортировки
+        ForkJoinPool sorters = createSortPool();
+        try {
+            allWords.sort(sorters);
+        } finally {
+            sorters.shutdown();
+        }
 
-                if (writtenWords % PROGRESS_UPDATE_INTERVAL == 0) {
-                    int progress = 75 + (int)((writtenWords * 25) / totalWords);
-                    updateProgress(progress,
-                            String.format("Запись: %d/%d слов", writtenWords, totalWords));
-                }
-            }
+        progress.startPhase("Запись результата", 75, 100, SortProgress.Unit.STEPS, 0);
+        try (TextRecordWriter writer = openTextOutput(new File(outputFile), RunFormat.BLOCK_SIZE)) {
+            allWords.writeSorted(writer);
         }
+        return null;
     }
 
-    private void sortWithBuckets(String inputFile, String outputFile, long fileSize) throws IOException {
-        // Сортирует большие файлы с использованием корзин по первой букве
-        updateProgress(5, "Статистика по буквам...");
-        Map<Character, Long> letterCounts = new HashMap<>();
+    void sortWithBuckets(String inputFile, String outputFile, long fileSize) throws IOException {
+        // Сортирует большие файлы с использованием корзин, границы которых выбраны по выборке слов
+        progress.startPhase("Распределение по временным файлам", 0, 60, SortProgress.Unit.BYTES, fileSize);
 
-        // Подсчитывает сколько слов начинается с каждой буквы
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            long processedBytes = 0;
-
-            while ((line = reader.readLine()) != null) {
-                processedBytes += line.getBytes().length + 1;
-                String[] words = line.split("\\s+");
+        // Распределяет слова по временным файлам: диапазоны входного файла обрабатываются
+        // параллельно, у каждого диапазона свой файл для каждой корзины
+        File input = new File(inputFile);
+        int partitions = getBucketCount(fileSize);
+        int rangeCount = getDistributionRanges(partitions, getInputRangeCount(fileSize));
+        int blockSize = getSpillBlockSize(partitions, rangeCount);
+        long[] bounds = WordSource.splitRanges(fileSize, rangeCount);
+        BucketRouter router = createRouter(input, fileSize, partitions);
+
+        List<File[]> rangeFiles = new ArrayList<>();
+        ExecutorService distributors = Executors.newFixedThreadPool(rangeCount);
+        try {
+            List<Future<File[]>> ranges = new ArrayList<>();
+            for (int i = 0; i < rangeCount; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                ranges.add(distributors.submit(() -> distributeRange(input, router, blockSize, start, end)));
+            }
 
-                for (String word : words) {
-                    if (!word.trim().isEmpty()) {
-                        char firstChar = Character.toLowerCase(word.charAt(0));
-                        letterCounts.put(firstChar, letterCounts.getOrDefault(firstChar, 0L) + 1);
-                    }
+            // Файлы корзины идут в порядке диапазонов, поэтому равные слова сохраняют порядок входного файла
+            IOException error = null;
+            for (Future<File[]> range : ranges) {
+                try {
+                    rangeFiles.add(await(range));
+                } catch (IOException e) {
+                    error = error == null ? e : error;
                 }
-
-                if (processedBytes % (10 * 1024 * 1024) == 0) {
-                    int progress = 5 + (int)((processedBytes * 15) / fileSize);
-                    updateProgress(progress, "Статистика...");
+            }
+            if (error != null) {
+                for (File[] files : rangeFiles) {
+                    deleteFiles(files);
                 }
+                throw error;
             }
+        } finally {
+            distributors.shutdown();
         }
 
-        updateProgress(20, "Распределение по временным файлам...");
+        sortBuckets(collectBuckets(router, rangeFiles), outputFile);
+    }
 
-        // Создает временные файлы для каждой буквы алфавита
-        Map<Character, File> tempFiles = new HashMap<>();
-        Map<Character, BufferedWriter> writers = new HashMap<>();
+    private BucketRouter createRouter(File input, long fileSize, int partitions) throws IOException {
+        // Выбирает разделители корзин по случайной выборке слов входного файла: корзины получаются
+        // примерно равными при любом распределении слов
+        List<byte[]> samples = sampleInput(input, fileSize);
+        return new BucketRouter(RunPartitioner.chooseSplitters(samples, partitions));
+    }
 
-        for (char c = 'a'; c <= 'z'; c++) {
-            File tempFile = File.createTempFile("bucket_" + c, ".tmp");
-            tempFile.deleteOnExit();
-            tempFiles.put(c, tempFile);
-            writers.put(c, new BufferedWriter(new FileWriter(tempFile)));
+    private List<byte[]> sampleInput(File input, long fileSize) throws IOException {
+        // Читает несколько слов после случайного места в каждой из SAMPLE_POSITIONS равных частей файла.
+        // Выборка не учитывается в статистике чтения: из каждого окна читаются лишь несколько слов
+        Random random = new Random(fileSize);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < SAMPLE_POSITIONS; i++) {
+            long from = fileSize * i / SAMPLE_POSITIONS;
+            long to = fileSize * (i + 1) / SAMPLE_POSITIONS;
+            long start = from + (long) (random.nextDouble() * (to - from));
+            try (WordSource source = new WordSource(input, null, getMemoryBudget() / 4, start, fileSize)) {
+                for (int w = 0; w < WORDS_PER_SAMPLE_POSITION && source.next(); w++) {
+                    samples.add(Arrays.copyOfRange(source.utf8Buffer(), source.utf8Offset(),
+                            source.utf8Offset() + source.utf8Length()));
+                }
+            }
         }
+        return samples;
+    }
 
-        // Распределяет слова по временным файлам в зависимости от первой буквы
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            long processedBytes = 0;
-            long wordCount = 0;
+    private int getBucketCount(long bytes) {
+        // Частей, на которые делятся слова, столько, чтобы каждая корзина с запасом помещалась в память
+        // для сортировки. На каждую часть приходится до двух файлов корзин (см. BucketRouter), и их
+        // буферы записи даже с самыми маленькими блоками должны поместиться в свою долю лимита памяти
+        long bucketBytes = Math.max(1, getBucketMemory() / IN_MEMORY_BUDGET_DIVISOR);
+        long needed = (bytes + bucketBytes - 1) / bucketBytes * BUCKET_OVERSAMPLING;
+        long affordable = getWriterBudget() / (2L * getWriterBytes(MIN_SPILL_BLOCK_BYTES));
+        return (int) Math.max(1, Math.min(MAX_BUCKETS, Math.min(needed, affordable)));
+    }
 
-            while ((line = reader.readLine()) != null) {
-                processedBytes += line.getBytes().length + 1;
-                String[] words = line.split("\\s+");
+    private int getDistributionRanges(int partitions, int ranges) {
+        // Диапазонов, которые распределяются параллельно, не больше, чем позволяют буферы записи:
+        // у каждого диапазона свои файлы корзин
+        long affordable = getWriterBudget() / (2L * partitions * getWriterBytes(MIN_SPILL_BLOCK_BYTES));
+        return (int) Math.max(1, Math.min(ranges, affordable));
+    }
 
-                for (String word : words) {
-                    if (!word.trim().isEmpty()) {
-                        char firstChar = Character.toLowerCase(word.charAt(0));
-                        BufferedWriter writer;
+    private int getSpillBlockSize(int partitions, int ranges) {
+        // Размер блока файлов корзин: буферы записи всех файлов всех диапазонов занимают не больше
+        // своей доли лимита памяти, а блок не больше обычного блока серии
+        long perWriter = getWriterBudget() / (2L * partitions * ranges);
+        return (int) Math.max(MIN_SPILL_BLOCK_BYTES, Math.min(RunFormat.BLOCK_SIZE, perWriter / getWriterBytes(1)));
+    }
 
-                        if (firstChar >= 'a' && firstChar <= 'z') {
-                            writer = writers.get(firstChar);
-                        } else {
-                            writer = writers.get('z'); // Слова не начинающиеся с буквы помещаются в корзину 'z'
-                        }
+    private static long getWriterBytes(int blockSize) {
+        // Память одного файла корзины: блок и буфер записи такого же размера
+        return 2L * blockSize;
+    }
 
-                        writer.write(word);
-                        writer.newLine();
-                        wordCount++;
-                    }
+    private long getWriterBudget() {
+        // Доля лимита памяти под буферы записи файлов корзин
+        return getMemoryBudget() / WRITER_BUDGET_DIVISOR;
+    }
+
+    private int getConcurrentBuckets() {
+        // Корзин, которые сортируются одновременно: по одной на поток сортировки и еще одна,
+        // которая в это время записывается в выходной файл; каждой нужно не меньше MIN_BUCKET_MEMORY_BYTES
+        long affordable = getMemoryBudget() / MIN_BUCKET_MEMORY_BYTES;
+        return (int) Math.max(1, Math.min(getSortThreads() + 1, affordable));
+    }
+
+    private long getBucketMemory() {
+        // Память под одну корзину: лимит делится между одновременно сортируемыми корзинами
+        return getMemoryBudget() / getConcurrentBuckets();
+    }
+
+    private File[] distributeRange(File input, BucketRouter router, int blockSize, long start, long end)
+            throws IOException {
+        // Распределяет слова диапазона входного файла по временным файлам корзин
+        try (WordInput source = openWordSource(input, start, end)) {
+            return distributeWords(null, source, router, blockSize, start, end);
+        }
+    }
+
+    private File[] distributeWords(WordArena loaded, WordInput source, BucketRouter router, int blockSize,
+                                   long start, long end) throws IOException {
+        // Распределяет по временным файлам корзин сначала уже загруженные слова (если есть),
+        // затем оставшиеся слова источника
+        BucketWriter buckets = new BucketWriter(router, blockSize);
+        try {
+            if (loaded != null) {
+                loaded.writeInOrder(buckets);
+            }
+
+            long processedWords = 0;
+            long reported = start;
+
+            while (source.next()) {
+                buckets.write(source.utf8Buffer(), source.utf8Offset(), source.utf8Length());
+
+                if (++processedWords % PROGRESS_UPDATE_INTERVAL == 0) {
+                    long done = Math.min(source.position(), end);
+                    progress.addDone(done - reported);
+                    reported = done;
                 }
+            }
+            progress.addDone(end - reported);
+
+            buckets.close();
+            return buckets.files;
+        } catch (IOException | RuntimeException e) {
+            buckets.discard(e);
+            throw e;
+        }
+    }
 
-                if (processedBytes % (20 * 1024 * 1024) == 0) {
-                    int progress = 20 + (int)((processedBytes * 40) / fileSize);
-                    updateProgress(progress,
-                            String.format("Распределение: %d слов", wordCount));
+    private List<Bucket> collectBuckets(BucketRouter router, List<File[]> rangeFiles) {
+        // Собирает файлы каждой корзины из всех диапазонов; пустые корзины пропускаются
+        List<Bucket> buckets = new ArrayList<>();
+        for (int b = 0; b < router.getBucketCount(); b++) {
+            Bucket bucket = new Bucket(BucketRouter.isUniform(b));
+            for (File[] files : rangeFiles) {
+                if (files[b] != null) {
+                    bucket.parts.add(files[b]);
                 }
             }
+            if (!bucket.parts.isEmpty()) {
+                buckets.add(bucket);
+            }
         }
+        return buckets;
+    }
 
-        // Закрывает все потоки записи
-        for (BufferedWriter writer : writers.values()) {
-            writer.close();
+    private void sortBuckets(List<Bucket> buckets, String outputFile) throws IOException {
+        // Сортирует корзины несколькими потоками и записывает их в выходной файл по порядку: пока
+        // одна корзина записывается, следующие уже загружаются и сортируются
+        long totalBytes = 0;
+        for (Bucket bucket : buckets) {
+            totalBytes += bucket.getFileBytes();
         }
+        progress.startPhase("Сортировка корзин", 60, 100, SortProgress.Unit.BYTES, totalBytes);
+
+        int slots = getConcurrentBuckets();
+        long bucketMemory = getBucketMemory();
+        ForkJoinPool sorters = createSortPool();
+        ExecutorService loaders = Executors.newFixedThreadPool(slots);
+        Deque<PendingBucket> pending = new ArrayDeque<>();
+        try (TextRecordWriter outputWriter = openTextOutput(new File(outputFile), RunFormat.BLOCK_SIZE)) {
+            for (Bucket bucket : buckets) {
+                // Не больше slots корзин одновременно держат память: перед следующей корзиной
+                // записывается самая ранняя из ожидающих
+                if (pending.size() >= slots) {
+                    writeBucket(pending.poll(), outputWriter, sorters);
+                }
+                MemoryGovernor.Reservation memory = reserveMemory(bucketMemory, MIN_IN_MEMORY_BYTES);
+                Future<WordArena> sorted = null;
+                try {
+                    if (bucket.fits(memory.getBytes())) {
+                        sorted = loaders.submit(() -> {
+                            WordArena words = loadBucket(bucket, memory.getBytes());
+                            words.sort(sorters);
+                            return words;
+                        });
+                    }
+                } catch (RuntimeException | IOException e) {
+                    memory.close();
+                    throw e;
+                }
+                pending.add(new PendingBucket(bucket, memory, sorted));
+            }
+            while (!pending.isEmpty()) {
+                writeBucket(pending.poll(), outputWriter, sorters);
+            }
+        } finally {
+            // При ошибке дожидается уже запущенных корзин, возвращает их память и удаляет
+            // файлы еще не обработанных корзин
+            for (PendingBucket bucket : pending) {
+                bucket.discard();
+            }
+            loaders.shutdown();
+            sorters.shutdown();
+            for (Bucket bucket : buckets) {
+                cleanupTempFiles(bucket.parts);
+            }
+        }
+    }
 
-        updateProgress(60, "Сортировка временных файлов...");
+    private void writeBucket(PendingBucket pending, RecordWriter output, ForkJoinPool sorters) throws IOException {
+        // Записывает очередную корзину: отсортированную в памяти - сразу, остальные - через sortBucket
+        try {
+            if (pending.sorted != null) {
+                await(pending.sorted).writeSorted(output);
+                progress.addDone(pending.bucket.getFileBytes());
+                cleanupTempFiles(pending.bucket.parts);
+            } else {
+                sortBucket(pending.bucket, output, sorters, pending.memory.getBytes(), 0);
+            }
+        } finally {
+            pending.memory.close();
+        }
+    }
 
-        // Сортирует каждый временный файл и объединяет результаты
-        try (BufferedWriter outputWriter = new BufferedWriter(new FileWriter(outputFile))) {
-            int bucketProcessed = 0;
-            for (char c = 'a'; c <= 'z'; c++) {
-                File tempFile = tempFiles.get(c);
-                if (tempFile.length() > 0) {
-                    List<String> bucketWords = new ArrayList<>();
+    private WordArena loadBucket(Bucket bucket, long memory) throws IOException {
+        // Читает все слова корзины в чанк с индексом сразу на все слова
+        WordArena words = new WordArena(memory, (int) bucket.getWords());
+        for (File part : bucket.parts) {
+            try (RunReader reader = openRun(part, RunFormat.BLOCK_SIZE)) {
+                while (reader.next()) {
+                    words.add(reader.buffer(), reader.offset(), reader.length());
+                }
+            }
+        }
+        return words;
+    }
 
-                    // Читает все слова из временного файла
-                    try (BufferedReader reader = new BufferedReader(new FileReader(tempFile))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            if (!line.trim().isEmpty()) {
-                                bucketWords.add(line);
-                            }
-                        }
+    private void sortBucket(Bucket bucket, RecordWriter output, ForkJoinPool sorters, long memory,
+                            int depth) throws IOException {
+        // Записывает корзину в выход по порядку: корзина равных слов переписывается как есть,
+        // помещающаяся в память - сортируется в памяти, а большая делится на корзины поменьше
+        // или, если деление не помогает, сортируется внешним слиянием
+        long fileBytes = bucket.getFileBytes();
+        try {
+            if (bucket.uniform) {
+                copyRuns(bucket.parts, output);
+            } else if (bucket.fits(memory)) {
+                WordArena bucketWords = loadBucket(bucket, memory);
+                bucketWords.sort(sorters);
+                bucketWords.writeSorted(output);
+            } else if (depth < MAX_SPLIT_DEPTH) {
+                List<Bucket> smaller = splitBucket(bucket, bucket.getDataBytes());
+                try {
+                    for (Bucket part : smaller) {
+                        sortBucket(part, output, sorters, memory, depth + 1);
                     }
-
-                    // Сортирует слова в текущей корзине
-                    Collections.sort(bucketWords, String.CASE_INSENSITIVE_ORDER);
-
-                    // Записывает отсортированные слова в выходной файл
-                    for (String word : bucketWords) {
-                        outputWriter.write(word);
-                        outputWriter.newLine();
+                } finally {
+                    for (Bucket part : smaller) {
+                        cleanupTempFiles(part.parts);
                     }
-
-                    // Удаляет временный файл после обработки
-                    tempFile.delete();
                 }
+                // Прогресс уже учтен корзинами, на которые разделена эта
+                return;
+            } else {
+                sortExternally(bucket.parts, output, sorters, memory);
+            }
+            progress.addDone(fileBytes);
+        } finally {
+            cleanupTempFiles(bucket.parts);
+        }
+    }
 
-                bucketProcessed++;
-                int progress = 60 + (bucketProcessed * 40) / 26;
-                updateProgress(progress,
-                        String.format("Обработка: %d/26 корзин", bucketProcessed));
+    private List<Bucket> splitBucket(Bucket bucket, long dataBytes) throws IOException {
+        // Делит корзину на корзины поменьше. Разделители берутся из индексов ее файлов: записи индекса
+        // расставлены равномерно по байтам. Слова, равные разделителю, попадают в отдельную корзину,
+        // поэтому каждое деление хотя бы немного уменьшает корзину
+        List<RunFormat.Info> infos = new ArrayList<>();
+        for (File part : bucket.parts) {
+            infos.add(RunFormat.readIndex(part));
+        }
+        int partitions = getBucketCount(dataBytes);
+        BucketRouter router = new BucketRouter(RunPartitioner.sampleSplitters(infos, partitions));
+
+        BucketWriter buckets = new BucketWriter(router, getSpillBlockSize(partitions, 1));
+        try {
+            for (File part : bucket.parts) {
+                try (RunReader reader = openRun(part, RunFormat.BLOCK_SIZE)) {
+                    while (reader.next()) {
+                        buckets.write(reader.buffer(), reader.offset(), reader.length());
+                    }
+                }
             }
+            buckets.close();
+        } catch (IOException | RuntimeException e) {
+            buckets.discard(e);
+            throw e;
         }
+        cleanupTempFiles(bucket.parts);
+        return collectBuckets(router, Collections.singletonList(buckets.files));
     }
 
-    private long countWords(String inputFile) throws IOException {
-        // Подсчитывает общее количество слов в файле
-        long count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] words = line.split("\\s+");
-                for (String word : words) {
-                    if (!word.trim().isEmpty()) {
-                        count++;
+    private void sortExternally(List<File> parts, RecordWriter output, ForkJoinPool sorters,
+                                long memory) throws IOException {
+        // Сортирует корзину, которую не удалось разделить, как внешняя сортировка: порции корзины
+        // размером в выданную память сортируются в серии, а серии сливаются в выход
+        List<File> runs = new ArrayList<>();
+        try {
+            WordArena chunk = new WordArena(memory);
+            for (File part : parts) {
+                try (RunReader reader = openRun(part, RunFormat.BLOCK_SIZE)) {
+                    while (reader.next()) {
+                        if (!chunk.fits(reader.length())) {
+                            chunk.sort(sorters);
+                            runs.add(writeTempFile(chunk, "bucket_run_"));
+                            chunk = new WordArena(memory);
+                        }
+                        chunk.add(reader.buffer(), reader.offset(), reader.length());
                     }
                 }
             }
+            if (!chunk.isEmpty()) {
+                chunk.sort(sorters);
+                runs.add(writeTempFile(chunk, "bucket_run_"));
+            }
+            chunk = null;
+
+            mergeRunsInto(runs, output, memory);
+        } finally {
+            cleanupTempFiles(runs);
+        }
+    }
+
+    private void copyRuns(List<File> parts, RecordWriter output) throws IOException {
+        // Переписывает слова файлов в выход в исходном порядке
+        for (File part : parts) {
+            try (RunReader reader = openRun(part, RunFormat.BLOCK_SIZE)) {
+                while (reader.next()) {
+                    output.write(reader.buffer(), reader.offset(), reader.length());
+                }
+            }
+        }
+    }
+
+    private static void deleteFiles(File[] files) {
+        // Удаляет временные файлы корзин одного диапазона
+        for (File file : files) {
+            if (file != null) {
+                file.delete();
+            }
         }
-        return count;
     }
 
     @Override
@@ -237,31 +503,130 @@ public class BucketSort extends BaseExternalSorter {
         return "bucket";
     }
 
-    @Override
-    protected void updateProgress(int value) {
-        // Обновляет прогресс в GUI без дополнительного сообщения
-        if (gui != null) {
-            gui.updateBucketProgress(value);
+    private static final class Bucket {
+        // Временные файлы корзины в порядке входа; uniform - все слова корзины равны без учета регистра
+        final List<File> parts = new ArrayList<>();
+        final boolean uniform;
+        // Количество и общая длина слов из заголовков файлов (-1 - заголовки еще не прочитаны)
+        private long words = -1;
+        private long dataBytes;
+
+        Bucket(boolean uniform) {
+            this.uniform = uniform;
+        }
+
+        boolean fits(long memory) throws IOException {
+            // Корзину можно отсортировать в памяти: ее не нужно переписывать как есть или делить
+            return !uniform && WordArena.estimateBytes(getWords(), getDataBytes(), memory) <= memory;
+        }
+
+        long getWords() throws IOException {
+            readHeaders();
+            return words;
+        }
+
+        long getDataBytes() throws IOException {
+            readHeaders();
+            return dataBytes;
+        }
+
+        private void readHeaders() throws IOException {
+            // Размер корзины известен из заголовков ее файлов без чтения слов
+            if (words >= 0) {
+                return;
+            }
+            long count = 0;
+            for (File part : parts) {
+                RunFormat.Info info = RunFormat.readInfo(part);
+                count += info.recordCount;
+                dataBytes += info.payloadBytes;
+            }
+            words = count;
+        }
+
+        long getFileBytes() {
+            long bytes = 0;
+            for (File part : parts) {
+                bytes += part.length();
+            }
+            return bytes;
         }
     }
 
-    @Override
-    protected void updateProgress(int value, String status) {
-        // Обновляет прогресс в GUI с дополнительным сообщением о статусе
-        if (gui != null) {
-            if (status != null) {
-                gui.updateBucketProgress(value, status);
-            } else {
-                gui.updateBucketProgress(value);
+    private static final class PendingBucket {
+        // Корзина в очереди на запись, ее память и сортировка в памяти (null - корзина не помещается в память)
+        final Bucket bucket;
+        final MemoryGovernor.Reservation memory;
+        final Future<WordArena> sorted;
+
+        PendingBucket(Bucket bucket, MemoryGovernor.Reservation memory, Future<WordArena> sorted) {
+            this.bucket = bucket;
+            this.memory = memory;
+            this.sorted = sorted;
+        }
+
+        void discard() {
+            // Дожидается сортировки после ошибки и возвращает память
+            if (sorted != null) {
+                try {
+                    sorted.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // Ошибка уже не важна: сортировка прервана другой ошибкой
+                }
             }
+            memory.close();
         }
     }
 
-    @Override
-    protected void updateTimeLabel() {
-        // Обновляет метку времени в GUI
-        if (gui != null) {
-            gui.updateBucketTimeLabel();
+    private final class BucketWriter implements RecordWriter {
+        // Направляет каждое слово в файл его корзины; файл корзины создается при первом слове
+        private final BucketRouter router;
+        private final File[] files;
+        private final RunWriter[] writers;
+        // Размер блока и буфера записи каждого файла корзины
+        private final int blockSize;
+
+        BucketWriter(BucketRouter router, int blockSize) {
+            this.router = router;
+            this.blockSize = blockSize;
+            this.files = new File[router.getBucketCount()];
+            this.writers = new RunWriter[files.length];
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            int bucket = router.bucketOf(buffer, offset, length);
+            if (writers[bucket] == null) {
+                files[bucket] = createTempFile("bucket_" + bucket + "_");
+                writers[bucket] = createRunWriter(files[bucket], false, blockSize, blockSize);
+            }
+            writers[bucket].write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Закрывает все файлы корзин
+            for (RunWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        void discard(Exception error) {
+            // Закрывает и удаляет файлы корзин после ошибки
+            for (RunWriter writer : writers) {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException closeError) {
+                        error.addSuppressed(closeError);
+                    }
+                }
+            }
+            deleteFiles(files);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+import java.nio.charset.StandardCharsets;
+
+final class ByteWordOrder {
+    // Символ после приведения регистра так же, как это делает String.CASE_INSENSITIVE_ORDER:
+    // toLowerCase(toUpperCase(c)) для каждого символа Basic Multilingual Plane
+    private static final char[] FOLD = new char[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            FOLD[c] = Character.toLowerCase(Character.toUpperCase((char) c));
+        }
+    }
+
+    private ByteWordOrder() {
+    }
+
+    static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        // Сравнивает два слова в UTF-8 в том же порядке, что String.CASE_INSENSITIVE_ORDER,
+        // не декодируя их в строки. Совпадающие байты пропускаются без декодирования,
+        // ASCII сравнивается по таблице, остальные символы декодируются по одному
+        int i = aOffset;
+        int j = bOffset;
+        int aEnd = aOffset + aLength;
+        int bEnd = bOffset + bLength;
+        while (i < aEnd && j < bEnd) {
+            byte x = a[i];
+            byte y = b[j];
+            if (x == y) {
+                i++;
+                j++;
+                continue;
+            }
+            if (x >= 0 && y >= 0) {
+                int difference = FOLD[x] - FOLD[y];
+                if (difference != 0) {
+                    return difference;
+                }
+                i++;
+                j++;
+                continue;
+            }
+
+            // Различие внутри многобайтового символа: возвращается к его началу (предшествующие
+            // байты этого символа совпадают, поэтому сдвиг одинаков для обоих слов)
+            while ((a[i] & 0xC0) == 0x80 && i > aOffset) {
+                i--;
+                j--;
+            }
+            int xLength = sequenceLength(a[i]);
+            int yLength = sequenceLength(b[j]);
+            int difference = fold(decode(a, i, xLength)) - fold(decode(b, j, yLength));
+            if (difference != 0) {
+                return difference;
+            }
+            i += xLength;
+            j += yLength;
+        }
+        return i < aEnd ? 1 : (j < bEnd ? -1 : 0);
+    }
+
+    static int compare(long aKey, byte[] a, int aOffset, int aLength,
+                       long bKey, byte[] b, int bOffset, int bLength) {
+        // Сравнивает слова по префиксам ключей (см. prefixKey) и только при равных префиксах - целиком
+        if (aKey != bKey) {
+            return Long.compareUnsigned(aKey, bKey);
+        }
+        return compare(a, aOffset, aLength, b, bOffset, bLength);
+    }
+
+    static long prefixKey(byte[] bytes, int offset, int length) {
+        // Упаковывает первые четыре символа слова после приведения регистра в long (по 16 бит,
+        // сравнивается без знака): разные префиксы упорядочены так же, как сами слова.
+        // Символ вне BMP больше любого символа BMP, поэтому он и все следующие позиции
+        // заполняются 0xFFFF, и такие префиксы сравниваются целиком
+        long key = 0;
+        int slots = 0;
+        int i = offset;
+        int end = offset + length;
+        while (slots < 4 && i < end) {
+            byte lead = bytes[i];
+            int unit;
+            if (lead >= 0) {
+                unit = FOLD[lead];
+                i++;
+            } else {
+                int sequence = sequenceLength(lead);
+                int codePoint = decode(bytes, i, sequence);
+                i += sequence;
+                if (codePoint > Character.MAX_VALUE) {
+                    while (slots < 4) {
+                        key = key << 16 | 0xFFFF;
+                        slots++;
+                    }
+                    return key;
+                }
+                unit = FOLD[codePoint];
+            }
+            key = key << 16 | unit;
+            slots++;
+        }
+        return key << (16 * (4 - slots));
+    }
+
+    static int skipCharacters(byte[] bytes, int offset, int length, int count) {
+        // Смещение после первых count символов слова (не дальше конца слова)
+        int i = offset;
+        int end = offset + length;
+        while (count > 0 && i < end) {
+            i += bytes[i] >= 0 ? 1 : sequenceLength(bytes[i]);
+            count--;
+        }
+        return Math.min(i, end);
+    }
+
+    static int compare(byte[] a, byte[] b) {
+        return compare(a, 0, a.length, b, 0, b.length);
+    }
+
+    static byte[] encode(String word) {
+        // Представление слова, которое хранится в сериях
+        return word.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static boolean isValid(byte[] bytes, int offset, int length) {
+        // Проверяет, что байты - корректный UTF-8 в том же смысле, что и у декодера Java
+        // (без лишне длинных последовательностей, суррогатов и символов после U+10FFFF)
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int lead = bytes[i] & 0xFF;
+            if (lead < 0x80) {
+                i++;
+                continue;
+            }
+            int count;
+            int min = 0x80;
+            int max = 0xBF;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                count = 1;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                count = 2;
+                if (lead == 0xE0) {
+                    min = 0xA0;
+                } else if (lead == 0xED) {
+                    max = 0x9F;
+                }
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                count = 3;
+                if (lead == 0xF0) {
+                    min = 0x90;
+                } else if (lead == 0xF4) {
+                    max = 0x8F;
+                }
+            } else {
+                return false;
+            }
+            if (i + count >= end) {
+                return false;
+            }
+            int second = bytes[i + 1] & 0xFF;
+            if (second < min || second > max) {
+                return false;
+            }
+            for (int k = 2; k <= count; k++) {
+                if ((bytes[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += count + 1;
+        }
+        return true;
+    }
+
+    private static int sequenceLength(byte lead) {
+        // Количество байт символа UTF-8 по первому байту
+        if (lead >= 0) {
+            return 1;
+        }
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        }
+        if ((lead & 0xF0) == 0xE0) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private static int decode(byte[] bytes, int offset, int length) {
+        // Декодирует код символа из length байт UTF-8
+        switch (length) {
+            case 1:
+                return bytes[offset];
+            case 2:
+                return ((bytes[offset] & 0x1F) << 6) | (bytes[offset + 1] & 0x3F);
+            case 3:
+                return ((bytes[offset] & 0x0F) << 12) | ((bytes[offset + 1] & 0x3F) << 6) | (bytes[offset + 2] & 0x3F);
+            default:
+                return ((bytes[offset] & 0x07) << 18) | ((bytes[offset + 1] & 0x3F) << 12)
+                        | ((bytes[offset + 2] & 0x3F) << 6) | (bytes[offset + 3] & 0x3F);
+        }
+    }
+
+    private static int fold(int codePoint) {
+        // Приводит регистр символа; символы вне BMP сравниваются по коду целиком, как в String
+        return codePoint <= Character.MAX_VALUE ? FOLD[codePoint]
+                : Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,293 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+public class CorpusGenerator {
+    private static final String USAGE =
+            "Использование: java SortCli generate [параметры] <выходной файл>\n" +
+            "  --profile <имя>    профиль данных (по умолчанию zipf):\n" +
+            "                     zipf           - словарь естественного языка с распределением Ципфа\n" +
+            "                     uniform        - равномерно случайные слова\n" +
+            "                     sorted         - уже отсортированные слова\n" +
+            "                     reverse-sorted - слова в обратном порядке\n" +
+            "                     nearly-sorted  - отсортированные слова с ~2% случайных вставок\n" +
+            "                     long-tokens    - очень длинные слова (0.5-64 КБ)\n" +
+            "                     duplicates     - несколько десятков различных слов\n" +
+            "                     cyrillic       - кириллица и латиница с диакритикой\n" +
+            "                     single-line    - словарь Ципфа в одной строке без переводов строк\n" +
+            "  --size <размер>    размер файла, например 100m, 4g (по умолчанию 100m)\n" +
+            "  --seed <число>     начальное значение генератора (по умолчанию 42)";
+
+    // Размер словаря для профилей с распределением Ципфа
+    private static final int VOCABULARY_SIZE = 50_000;
+    // Показатель распределения Ципфа, близкий к естественному языку
+    private static final double ZIPF_EXPONENT = 1.07;
+    // Длина слов в профилях с упорядоченными словами
+    private static final int ORDERED_WORD_LENGTH = 10;
+    // Доля длин слов 1..11 в естественном языке (в процентах)
+    private static final int[] NATURAL_LENGTH_WEIGHTS = {3, 17, 21, 16, 11, 9, 8, 6, 4, 3, 2};
+
+    private static final String CYRILLIC_LETTERS = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+    private static final String ACCENTED_LETTERS = "abcdeéèêfghiïjklmnoöpqrsßtuüvwxyz";
+
+    public enum Profile {
+        ZIPF, UNIFORM, SORTED, REVERSE_SORTED, NEARLY_SORTED, LONG_TOKENS, DUPLICATES, CYRILLIC, SINGLE_LINE;
+
+        public String getId() {
+            // Возвращает имя профиля для командной строки
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+
+        public static Profile fromId(String id) {
+            // Находит профиль по имени из командной строки
+            for (Profile profile : values()) {
+                if (profile.getId().equals(id)) {
+                    return profile;
+                }
+            }
+            throw new IllegalArgumentException("неизвестный профиль " + id);
+        }
+    }
+
+    private final Profile profile;
+    private final Random random;
+
+    // Словарь (в UTF-8) и накопленные вероятности для выбора слов по Ципфу
+    private byte[][] vocabulary;
+    private double[] cumulative;
+    // Текущее значение счетчика для упорядоченных профилей
+    private long orderedValue;
+
+    public CorpusGenerator(Profile profile, long seed) {
+        this.profile = profile;
+        this.random = new Random(seed);
+        prepare();
+    }
+
+    private void prepare() {
+        // Готовит словарь или начальное состояние для выбранного профиля
+        switch (profile) {
+            case ZIPF:
+            case SINGLE_LINE:
+                buildVocabulary(VOCABULARY_SIZE, 'a', 26, null);
+                break;
+            case DUPLICATES:
+                buildVocabulary(32, 'a', 26, null);
+                break;
+            case CYRILLIC:
+                buildVocabulary(VOCABULARY_SIZE, (char) 0, 0, CYRILLIC_LETTERS);
+                break;
+            case SORTED:
+            case NEARLY_SORTED:
+                orderedValue = random.nextInt(1000);
+                break;
+            case REVERSE_SORTED:
+                orderedValue = maxOrderedValue() - random.nextInt(1000);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void generate(File output, long sizeBytes) throws IOException {
+        // Записывает в файл слова выбранного профиля, пока не будет достигнут размер
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 20)) {
+            long written = 0;
+            int wordsInLine = 0;
+            int lineLength = nextLineLength();
+            while (written < sizeBytes) {
+                byte[] word = nextWord();
+                if (wordsInLine > 0) {
+                    // Разделяет слова пробелом или переводом строки
+                    if (profile != Profile.SINGLE_LINE && wordsInLine >= lineLength) {
+                        out.write('\n');
+                        wordsInLine = 0;
+                        lineLength = nextLineLength();
+                    } else {
+                        out.write(' ');
+                    }
+                    written++;
+                }
+                out.write(word);
+                written += word.length;
+                wordsInLine++;
+            }
+            if (profile != Profile.SINGLE_LINE) {
+                out.write('\n');
+            }
+        }
+    }
+
+    private int nextLineLength() {
+        // Количество слов в следующей строке
+        return 1 + random.nextInt(16);
+    }
+
+    private byte[] nextWord() {
+        // Возвращает следующее слово профиля в UTF-8
+        switch (profile) {
+            case ZIPF:
+            case SINGLE_LINE:
+            case DUPLICATES:
+            case CYRILLIC:
+                return vocabulary[sampleZipf()];
+            case UNIFORM:
+                return randomWord(naturalLength(), 'a', 26).getBytes(StandardCharsets.UTF_8);
+            case SORTED:
+                orderedValue += 1 + random.nextInt(64);
+                return orderedWord(orderedValue);
+            case REVERSE_SORTED:
+                orderedValue -= 1 + random.nextInt(64);
+                return orderedWord(Math.max(0, orderedValue));
+            case NEARLY_SORTED:
+                if (random.nextInt(100) < 2) {
+                    return orderedWord((long) (random.nextDouble() * maxOrderedValue()));
+                }
+                orderedValue += 1 + random.nextInt(64);
+                return orderedWord(orderedValue);
+            case LONG_TOKENS:
+                return randomWord(512 + random.nextInt(64 * 1024 - 512), 'a', 26).getBytes(StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException("профиль без генератора: " + profile);
+        }
+    }
+
+    private void buildVocabulary(int size, char firstLetter, int letterCount, String alphabet) {
+        // Строит словарь случайных слов и таблицу накопленных вероятностей Ципфа
+        vocabulary = new byte[size][];
+        cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            String word;
+            if (alphabet != null && random.nextInt(10) == 0) {
+                // Часть слов кириллического профиля - латиница с диакритикой
+                word = randomWord(naturalLength(), ACCENTED_LETTERS);
+            } else if (alphabet != null) {
+                word = randomWord(naturalLength(), alphabet);
+            } else {
+                word = randomWord(naturalLength(), firstLetter, letterCount);
+            }
+            if (random.nextInt(7) == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            vocabulary[i] = word.getBytes(StandardCharsets.UTF_8);
+            sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    private int sampleZipf() {
+        // Выбирает номер слова словаря по распределению Ципфа
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, vocabulary.length - 1);
+    }
+
+    private int naturalLength() {
+        // Длина слова по распределению длин естественного языка
+        int value = random.nextInt(100);
+        for (int i = 0; i < NATURAL_LENGTH_WEIGHTS.length; i++) {
+            value -= NATURAL_LENGTH_WEIGHTS[i];
+            if (value < 0) {
+                return i + 1;
+            }
+        }
+        return NATURAL_LENGTH_WEIGHTS.length + random.nextInt(8);
+    }
+
+    private String randomWord(int length, char firstLetter, int letterCount) {
+        // Случайное слово из букв диапазона
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (firstLetter + random.nextInt(letterCount));
+        }
+        return new String(chars);
+    }
+
+    private String randomWord(int length, String alphabet) {
+        // Случайное слово из букв алфавита
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+
+    private static long maxOrderedValue() {
+        // Наибольшее значение, которое помещается в слово фиксированной длины
+        long max = 1;
+        for (int i = 0; i < ORDERED_WORD_LENGTH; i++) {
+            max *= 26;
+        }
+        return max - 1;
+    }
+
+    private byte[] orderedWord(long value) {
+        // Записывает число в системе счисления с основанием 26 буквами фиксированной длины,
+        // поэтому порядок слов совпадает с порядком чисел (регистр первой буквы случаен)
+        byte[] word = new byte[ORDERED_WORD_LENGTH];
+        for (int i = ORDERED_WORD_LENGTH - 1; i >= 0; i--) {
+            word[i] = (byte) ('a' + value % 26);
+            value /= 26;
+        }
+        if (random.nextInt(10) == 0) {
+            word[0] = (byte) Character.toUpperCase(word[0]);
+        }
+        return word;
+    }
+
+    static int run(String[] args) throws IOException {
+        // Разбирает параметры командной строки и генерирует файл
+        Profile profile = Profile.ZIPF;
+        long size = 100L * 1024 * 1024;
+        long seed = 42;
+        String output = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profile":
+                    profile = Profile.fromId(value(args, ++i));
+                    break;
+                case "--size":
+                    size = SortCli.parseSize(value(args, ++i));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value(args, ++i));
+                    break;
+                case "--help":
+                    System.out.println(USAGE);
+                    return 0;
+                default:
+                    if (args[i].startsWith("--") || output != null) {
+                        throw new IllegalArgumentException("неизвестный параметр " + args[i] + "\n" + USAGE);
+                    }
+                    output = args[i];
+            }
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("не указан выходной файл\n" + USAGE);
+        }
+
+        long start = System.currentTimeMillis();
+        new CorpusGenerator(profile, seed).generate(new File(output), size);
+        System.out.printf("%s: %d МБ за %.2f сек -> %s%n", profile.getId(), new File(output).length() >> 20,
+                (System.currentTimeMillis() - start) / 1000.0, output);
+        return 0;
+    }
+
+    private static String value(String[] args, int index) {
+        // Возвращает значение параметра или сообщает о его отсутствии
+        if (index >= args.length) {
+            throw new IllegalArgumentException("не указано значение для " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
\ No newline at end of file
@@ -3,9 +3,13 @@ import java.awt.*;
 import java.io.*;
 import java.util.*;
 import java.util.List;
+import javax.swing.Timer;
 import java.util.concurrent.*;
 
 public class Coursework extends JFrame {
+    // Период опроса счетчиков прогресса алгоритмов (мс)
+    private static final int PROGRESS_REFRESH_INTERVAL = 100;
+
     private JProgressBar oneWayProgressBar;
     private JProgressBar kWayProgressBar;
     private JProgressBar replacementProgressBar;
@@ -36,6 +40,12 @@ public class Coursework extends JFrame {
 
     // Список доступных алгоритмов сортировки
     private List<ExternalSortAlgorithm> sortingAlgorithms;
+    // Задания текущего запуска по идентификатору алгоритма, их прогресс опрашивает таймер
+    private Map<String, SortJob> sortJobs = new HashMap<>();
+    // Таймер, который с фиксированной частотой перерисовывает прогресс-бары
+    private Timer progressTimer;
+    // Время последнего статуса, выставленного самим окном (не алгоритмом)
+    private volatile long lastWindowStatusNanos;
 
     public Coursework() {
         // Инициализирует алгоритмы сортировки
@@ -46,12 +56,7 @@ public class Coursework extends JFrame {
 
     private void initializeAlgorithms() {
         // Создает список алгоритмов для сортировки
-        sortingAlgorithms = Arrays.asList(
-                new OneWayMergeSort(),
-                new KWayMergeSort(),
-                new ReplacementSelectionSort(),
-                new BucketSort()
-        );
+        sortingAlgorithms = ExternalSortAlgorithm.createAll();
     }
 
     private void initializeGUI() {
@@ -77,6 +82,9 @@ public class Coursework extends JFrame {
 
         add(mainPanel);
 
+        // Создает таймер опроса прогресса (запускается вместе с сортировкой)
+        progressTimer = new Timer(PROGRESS_REFRESH_INTERVAL, e -> refreshProgress());
+
         // Настраивает размер и положение окна
         pack();
         setLocationRelativeTo(null);
@@ -335,11 +343,19 @@ public class Coursework extends JFrame {
         totalSortingTime = 0;
         totalTimeLabel.setText("Общее время: не измерено");
 
+        // Создает задания для всех алгоритмов заранее, чтобы таймер видел их с начала
+        Map<String, SortJob> jobs = new HashMap<>();
+        for (ExternalSortAlgorithm algorithm : sortingAlgorithms) {
+            jobs.put(algorithm.getAlgorithmId(), createSortJob(algorithm));
+        }
+        sortJobs = jobs;
+        startTime = System.currentTimeMillis();
+        progressTimer.start();
+
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() throws Exception {
                 // Запускает сортировку в отдельном потоке
-                startTime = System.currentTimeMillis();
                 updateStatus("Запуск сортировок...");
 
                 if (parallelMode) {
@@ -357,6 +373,10 @@ public class Coursework extends JFrame {
                 long endTime = System.currentTimeMillis();
                 totalSortingTime = endTime - startTime;
 
+                // Останавливает таймер и последний раз отображает итоговый прогресс
+                progressTimer.stop();
+                refreshProgress();
+
                 isRunning = false;
                 startButton.setEnabled(true);
                 selectButton.setEnabled(true);
@@ -380,27 +400,43 @@ public class Coursework extends JFrame {
         ExecutorService executor = Executors.newFixedThreadPool(sortingAlgorithms.size());
         List<Future<Long>> futures = new ArrayList<>();
 
-        // Создает задачи для каждого алгоритма
+        // Входной файл разбирается на слова один раз: все алгоритмы получают слова из общего чтения
+        List<SortJob> jobs = new ArrayList<>();
         for (ExternalSortAlgorithm algorithm : sortingAlgorithms) {
-            Callable<Long> task = () -> {
-                long start = System.currentTimeMillis();
-                algorithm.sort(selectedFilePath, getOutputFilePath(algorithm.getAlgorithmId()), Coursework.this);
-                return System.currentTimeMillis() - start;
-            };
-            futures.add(executor.submit(task));
+            jobs.add(sortJobs.get(algorithm.getAlgorithmId()));
         }
+        try (SharedInputScan scan = SharedInputScan.attach(new File(selectedFilePath), jobs)) {
+            scan.start();
+
+            // Создает задачи для каждого алгоритма
+            for (ExternalSortAlgorithm algorithm : sortingAlgorithms) {
+                SortJob job = sortJobs.get(algorithm.getAlgorithmId());
+                Callable<Long> task = () -> {
+                    long start = System.currentTimeMillis();
+                    try {
+                        algorithm.sort(job);
+                    } finally {
+                        job.releaseSharedInput();
+                    }
+                    return System.currentTimeMillis() - start;
+                };
+                futures.add(executor.submit(task));
+            }
 
-        // Собирает результаты выполнения алгоритмов
-        for (int i = 0; i < sortingAlgorithms.size(); i++) {
-            try {
-                long executionTime = futures.get(i).get();
-                updateAlgorithmTime(sortingAlgorithms.get(i), executionTime);
-            } catch (Exception e) {
-                updateStatus("Ошибка при выполнении " + sortingAlgorithms.get(i).getAlgorithmName() + ": " + e.getMessage());
+            // Собирает результаты выполнения алгоритмов
+            for (int i = 0; i < sortingAlgorithms.size(); i++) {
+                try {
+                    long executionTime = futures.get(i).get();
+                    updateAlgorithmTime(sortingAlgorithms.get(i), executionTime);
+                } catch (Exception e) {
+                    sortJobs.get(sortingAlgorithms.get(i).getAlgorithmId()).getProgress().finish("ошибка");
+                    updateStatus("Ошибка при выполнении " + sortingAlgorithms.get(i).getAlgorithmName() + ": " + e.getMessage());
+                }
             }
+        } finally {
+            // Общее чтение и потоки алгоритмов закрываются и при ошибке запуска или прерывании ожидания
+            executor.shutdown();
         }
-
-        executor.shutdown();
     }
 
     private void runSequentialSorting() throws Exception {
@@ -412,31 +448,72 @@ public class Coursework extends JFrame {
             long startTime = System.currentTimeMillis();
 
             // Выполняет сортировку текущим алгоритмом
-            algorithm.sort(selectedFilePath, getOutputFilePath(algorithm.getAlgorithmId()), this);
+            algorithm.sort(sortJobs.get(algorithm.getAlgorithmId()));
 
             long endTime = System.currentTimeMillis();
             updateAlgorithmTime(algorithm, endTime - startTime);
         }
     }
 
+    private SortJob createSortJob(ExternalSortAlgorithm algorithm) {
+        // Создает задание на сортировку, прогресс которого опрашивает таймер окна
+        return new SortJob(selectedFilePath, getOutputFilePath(algorithm.getAlgorithmId()));
+    }
+
+    private void refreshProgress() {
+        // Считывает счетчики всех алгоритмов и перерисовывает прогресс (вызывается таймером в EDT)
+        refreshAlgorithmProgress("one_way", oneWayProgressBar, oneWayTimeLabel);
+        refreshAlgorithmProgress("k_way", kWayProgressBar, kWayTimeLabel);
+        refreshAlgorithmProgress("replacement", replacementProgressBar, replacementTimeLabel);
+        refreshAlgorithmProgress("bucket", bucketProgressBar, bucketTimeLabel);
+
+        // Показывает в строке статуса этап алгоритма, который сменил этап последним
+        ExternalSortAlgorithm latestAlgorithm = null;
+        long latestPhaseNanos = lastWindowStatusNanos;
+        for (ExternalSortAlgorithm algorithm : sortingAlgorithms) {
+            SortJob job = sortJobs.get(algorithm.getAlgorithmId());
+            if (job != null && job.getProgress().isStarted()
+                    && job.getProgress().getPhaseNanos() - latestPhaseNanos > 0) {
+                latestAlgorithm = algorithm;
+                latestPhaseNanos = job.getProgress().getPhaseNanos();
+            }
+        }
+        if (latestAlgorithm != null) {
+            SortProgress progress = sortJobs.get(latestAlgorithm.getAlgorithmId()).getProgress();
+            statusLabel.setText(latestAlgorithm.getAlgorithmName() + ": " + progress.getStatus());
+        }
+
+        if (isRunning) {
+            long elapsed = (System.currentTimeMillis() - startTime) / 1000;
+            timeLabel.setText("Время: " + elapsed + " сек");
+        }
+    }
+
+    private void refreshAlgorithmProgress(String algorithmId, JProgressBar progressBar, JLabel timeLabel) {
+        // Переносит значения счетчиков одного алгоритма на его прогресс-бар и метку времени
+        SortJob job = sortJobs.get(algorithmId);
+        if (job == null || !job.getProgress().isStarted()) {
+            return;
+        }
+        SortProgress progress = job.getProgress();
+        progressBar.setValue(progress.getPercent());
+        timeLabel.setText(String.format("Время: %.2f сек", progress.getElapsedMillis() / 1000.0));
+    }
+
     private void updateAlgorithmTime(ExternalSortAlgorithm algorithm, long time) {
         // Обновляет время выполнения для конкретного алгоритма
         switch (algorithm.getAlgorithmId()) {
             case "one_way":
                 oneWayTime = time;
-                updateOneWayTimeLabel();
                 break;
             case "k_way":
                 kWayTime = time;
-                updateKWayTimeLabel();
                 break;
             case "replacement":
                 replacementTime = time;
-                updateReplacementTimeLabel();
                 break;
             case "bucket":
                 bucketTime = time;
-                updateBucketTimeLabel();
                 break;
         }
     }
@@ -481,109 +558,10 @@ public class Coursework extends JFrame {
 
     public void updateStatus(String status) {
         // Обновляет текстовый статус в GUI
+        lastWindowStatusNanos = System.nanoTime();
         SwingUtilities.invokeLater(() -> statusLabel.setText(status));
     }
 
-    public void updateTimeLabel() {
-        // Обновляет метку текущего времени выполнения
-        SwingUtilities.invokeLater(() -> {
-            long elapsed = (System.currentTimeMillis() - startTime) / 1000;
-            timeLabel.setText("Время: " + elapsed + " сек");
-        });
-    }
-
-    public void updateOneWayTimeLabel() {
-        // Обновляет метку времени для One-Way Merge Sort
-        SwingUtilities.invokeLater(() -> {
-            oneWayTimeLabel.setText(String.format("Время: %.2f сек", oneWayTime / 1000.0));
-        });
-    }
-
-    public void updateKWayTimeLabel() {
-        // Обновляет метку времени для K-Way Merge Sort
-        SwingUtilities.invokeLater(() -> {
-            kWayTimeLabel.setText(String.format("Время: %.2f сек", kWayTime / 1000.0));
-        });
-    }
-
-    public void updateReplacementTimeLabel() {
-        // Обновляет метку времени для Replacement Selection Sort
-        SwingUtilities.invokeLater(() -> {
-            replacementTimeLabel.setText(String.format("Время: %.2f сек", replacementTime / 1000.0));
-        });
-    }
-
-    public void updateBucketTimeLabel() {
-        // Обновляет метку времени для Bucket Sort
-        SwingUtilities.invokeLater(() -> {
-            bucketTimeLabel.setText(String.format("Время: %.2f сек", bucketTime / 1000.0));
-        });
-    }
-
-    public void updateOneWayProgress(int value, String status) {
-        // Обновляет прогресс-бар и статус для One-Way Merge Sort
-        SwingUtilities.invokeLater(() -> {
-            oneWayProgressBar.setValue(value);
-            if (status != null) {
-                updateStatus(status);
-            }
-            updateTimeLabel();
-        });
-    }
-
-    public void updateOneWayProgress(int value) {
-        // Обновляет только прогресс-бар для One-Way Merge Sort
-        updateOneWayProgress(value, null);
-    }
-
-    public void updateKWayProgress(int value, String status) {
-        // Обновляет прогресс-бар и статус для K-Way Merge Sort
-        SwingUtilities.invokeLater(() -> {
-            kWayProgressBar.setValue(value);
-            if (status != null) {
-                updateStatus(status);
-            }
-            updateTimeLabel();
-        });
-    }
-
-    public void updateKWayProgress(int value) {
-        // Обновляет только прогресс-бар для K-Way Merge Sort
-        updateKWayProgress(value, null);
-    }
-
-    public void updateReplacementProgress(int value, String status) {
-        // Обновляет прогресс-бар и статус для Replacement Selection Sort
-        SwingUtilities.invokeLater(() -> {
-            replacementProgressBar.setValue(value);
-            if (status != null) {
-                updateStatus(status);
-            }
-            updateTimeLabel();
-        });
-    }
-
-    public void updateReplacementProgress(int value) {
-        // Обновляет только прогресс-бар для Replacement Selection Sort
-        updateReplacementProgress(value, null);
-    }
-
-    public void updateBucketProgress(int value, String status) {
-        // Обновляет прогресс-бар и статус для Bucket Sort
-        SwingUtilities.invokeLater(() -> {
-            bucketProgressBar.setValue(value);
-            if (status != null) {
-                updateStatus(status);
-            }
-            updateTimeLabel();
-        });
-    }
-
-    public void updateBucketProgress(int value) {
-        // Обновляет только прогресс-бар для Bucket Sort
-        updateBucketProgress(value, null);
-    }
-
     public static void main(String[] args) {
         // Проверяет настройки памяти и запускает приложение
         checkMemorySettings();
@@ -600,6 +578,7 @@ public class Coursework extends JFrame {
         System.out.println("=== Memory Settings ===");
         System.out.println("Max memory: " + maxMemory + " MB");
         System.out.println("Total memory: " + totalMemory + " MB");
+        System.out.println("Memory for sorting: " + MemoryGovernor.shared().getCapacity() / (1024 * 1024) + " MB");
 
         if (maxMemory < 3500) {
             System.err.println("ВНИМАНИЕ: Мало памяти! Запустите с: java -Xmx4g Coursework");
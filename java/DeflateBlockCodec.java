@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+class DeflateBlockCodec implements BlockCodec {
+    // Быстрый уровень сжатия: текст сжимается в несколько раз, а процессор не становится узким местом
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    private Deflater deflater;
+    private Inflater inflater;
+
+    @Override
+    public byte getId() {
+        return RunFormat.CODEC_DEFLATE;
+    }
+
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // Верхняя оценка размера несжимаемых данных в формате zlib
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 64;
+    }
+
+    @Override
+    public int compress(byte[] source, int length, byte[] target) throws IOException {
+        // Сжимает блок целиком; Deflater переиспользуется между блоками
+        if (deflater == null) {
+            deflater = new Deflater(LEVEL);
+        }
+        deflater.reset();
+        deflater.setInput(source, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == target.length) {
+                throw new IOException("сжатый блок больше ожидаемого");
+            }
+            size += deflater.deflate(target, size, target.length - size);
+        }
+        return size;
+    }
+
+    @Override
+    public void decompress(byte[] source, int sourceLength, byte[] target, int targetLength) throws IOException {
+        // Восстанавливает блок целиком; Inflater переиспользуется между блоками
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.reset();
+        inflater.setInput(source, 0, sourceLength);
+        try {
+            int size = 0;
+            while (size < targetLength) {
+                int count = inflater.inflate(target, size, targetLength - size);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("поврежденный сжатый блок серии");
+                }
+                size += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("поврежденный сжатый блок серии", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Освобождает память zlib
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+}
\ No newline at end of file
@@ -1,9 +1,11 @@
 import java.awt.Color;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public interface ExternalSortAlgorithm {
-    void sort(String inputFile, String outputFile, Coursework gui) throws IOException;
-    // Выполняет сортировку файла и записывает результат в выходной файл
+    void sort(SortJob job) throws IOException;
+    // Выполняет сортировку входного файла задания и записывает результат в выходной файл
 
     String getAlgorithmName();
     // Возвращает читаемое название алгоритма для отображения в интерфейсе
@@ -13,4 +15,14 @@ public interface ExternalSortAlgorithm {
 
     String getAlgorithmId();
     // Возвращает уникальный текстовый идентификатор алгоритма
+
+    static List<ExternalSortAlgorithm> createAll() {
+        // Создает по одному экземпляру каждого доступного алгоритма
+        return Arrays.asList(
+                new OneWayMergeSort(),
+                new KWayMergeSort(),
+                new ReplacementSelectionSort(),
+                new BucketSort()
+        );
+    }
 }
\ No newline at end of file
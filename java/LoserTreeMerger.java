@@ -0,0 +1,120 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+class LoserTreeMerger implements Closeable {
+    // Источники слов (отсортированные серии)
+    private final RunReader[] inputs;
+    // Источник исчерпан
+    private final boolean[] exhausted;
+    // Префиксы ключей текущих слов источников (см. ByteWordOrder.prefixKey)
+    private final long[] keys;
+    // Дерево проигравших: tree[0] - номер победителя, tree[1..k-1] - проигравшие во внутренних узлах
+    private final int[] tree;
+    // Победитель уже выдан, и перед следующим турниром его источник нужно продвинуть
+    private boolean started;
+
+    LoserTreeMerger(List<RunReader> inputs) throws IOException {
+        // Читает первое слово каждой серии и проводит начальный турнир
+        this.inputs = inputs.toArray(new RunReader[0]);
+        this.exhausted = new boolean[this.inputs.length];
+        this.keys = new long[this.inputs.length];
+        this.tree = new int[Math.max(1, this.inputs.length)];
+        try {
+            for (int i = 0; i < this.inputs.length; i++) {
+                advance(i);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (this.inputs.length > 0) {
+            tree[0] = build(1);
+        }
+    }
+
+    private int build(int node) {
+        // Строит поддерево: запоминает проигравшего в узле и возвращает победителя
+        int k = inputs.length;
+        if (node >= k) {
+            return node - k;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (less(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    boolean next() throws IOException {
+        // Переходит к наименьшему слову среди всех серий; false - серии закончились.
+        // Слово доступно через buffer()/offset()/length() до следующего вызова
+        if (inputs.length == 0) {
+            return false;
+        }
+        int winner = tree[0];
+        if (started) {
+            advance(winner);
+
+            // Переигрывает только путь от листа победителя к корню: log2(k) сравнений
+            for (int node = (winner + inputs.length) >> 1; node > 0; node >>= 1) {
+                if (less(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+        }
+        started = true;
+        return !exhausted[winner];
+    }
+
+    private void advance(int input) throws IOException {
+        // Читает следующее слово источника и запоминает префикс его ключа
+        exhausted[input] = !inputs[input].next();
+        if (!exhausted[input]) {
+            keys[input] = inputs[input].prefixKey();
+        }
+    }
+
+    byte[] buffer() {
+        return inputs[tree[0]].buffer();
+    }
+
+    int offset() {
+        return inputs[tree[0]].offset();
+    }
+
+    int length() {
+        return inputs[tree[0]].length();
+    }
+
+    private boolean less(int first, int second) {
+        // Сравнивает текущие слова двух источников; исчерпанный источник больше любого слова,
+        // равные слова упорядочиваются по номеру серии, чтобы результат не зависел от турнира
+        if (exhausted[first] || exhausted[second]) {
+            return exhausted[second] && (!exhausted[first] || first < second);
+        }
+        RunReader a = inputs[first];
+        RunReader b = inputs[second];
+        int result = ByteWordOrder.compare(keys[first], a.buffer(), a.offset(), a.length(),
+                keys[second], b.buffer(), b.offset(), b.length());
+        return result != 0 ? result < 0 : first < second;
+    }
+
+    @Override
+    public void close() {
+        // Закрывает все источники, игнорируя ошибки закрытия
+        for (RunReader input : inputs) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                // Игнорирует ошибки при закрытии потоков
+            }
+        }
+    }
+}
\ No newline at end of file
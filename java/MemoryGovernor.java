@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import javax.management.NotificationEmitter;
+
+final class MemoryGovernor {
+    // Доля кучи, которую могут занять данные всех алгоритмов вместе: остальное остается
+    // на накладные расходы объектов, буферы ввода-вывода и запас для сборщика мусора
+    private static final double HEAP_FRACTION = 0.6;
+    // Порог заполнения старого поколения после сборки мусора, при котором выдача памяти сокращается
+    private static final double PRESSURE_THRESHOLD = 0.8;
+    // При каждом превышении порога общий лимит уменьшается на четверть, но не ниже восьмой части исходного
+    private static final int MIN_CAPACITY_DIVISOR = 8;
+
+    private static final MemoryGovernor SHARED = createShared();
+
+    // Исходный и текущий общий лимит и сумма выданных резервов
+    private final long initialCapacity;
+    private long capacity;
+    private long reserved;
+
+    MemoryGovernor(long capacity) {
+        this.initialCapacity = capacity;
+        this.capacity = capacity;
+    }
+
+    static MemoryGovernor shared() {
+        // Общий для всех алгоритмов JVM распорядитель памяти: одновременно работающие сортировки
+        // (например, в параллельном режиме окна) делят между собой одну кучу
+        return SHARED;
+    }
+
+    private static MemoryGovernor createShared() {
+        // Лимит вычисляется из размера кучи; пороги пулов памяти сообщают о нехватке памяти
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        if (maxMemory == Long.MAX_VALUE) {
+            maxMemory = Runtime.getRuntime().totalMemory();
+        }
+        MemoryGovernor governor = new MemoryGovernor((long) (maxMemory * HEAP_FRACTION));
+        governor.watchMemoryPools();
+        return governor;
+    }
+
+    private void watchMemoryPools() {
+        // Устанавливает порог заполнения после сборки мусора для пулов кучи, которые его поддерживают
+        // (старое поколение): заполнение выше порога означает, что живые данные не помещаются
+        boolean watching = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * PRESSURE_THRESHOLD));
+                watching = true;
+            }
+        }
+        if (watching && ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter) {
+            NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+            emitter.addNotificationListener((notification, handback) -> {
+                if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                    onMemoryPressure();
+                }
+            }, null, null);
+        }
+    }
+
+    synchronized long getCapacity() {
+        return capacity;
+    }
+
+    synchronized void onMemoryPressure() {
+        // Сокращает общий лимит: новые чанки и буферы получат меньше памяти, а пока выданные
+        // резервы превышают лимит, новые резервы получают только свой минимум
+        capacity = Math.max(initialCapacity / MIN_CAPACITY_DIVISOR, capacity - capacity / 4);
+    }
+
+    synchronized Reservation reserve(long requested, long minimum) throws IOException {
+        // Выделяет от minimum до requested байт, сколько сейчас свободно, и никогда не ждет: сортировки,
+        // работающие одновременно, ждут друг друга (например, через общее чтение файла), поэтому
+        // ожидание памяти могло бы их заблокировать. Каждое задание держит резервы не больше своего
+        // лимита, а лимиты одновременных заданий вместе не больше исходного общего лимита (см.
+        // SharedInputScan.attach), поэтому минимум помещается в исходный лимит, даже когда лимит
+        // сокращен из-за нехватки памяти; если минимум не помещается, лимиты заданий нарушены
+        long required = Math.min(minimum, initialCapacity);
+        long available = capacity - reserved;
+        long granted;
+        if (available >= required && available > 0) {
+            granted = Math.max(required, Math.min(requested, available));
+        } else if (reserved + required <= initialCapacity) {
+            granted = required;
+        } else {
+            throw new IOException("недостаточно памяти: нужно " + required + " байт, свободно "
+                    + Math.max(0, initialCapacity - reserved) + " из " + initialCapacity);
+        }
+        reserved += granted;
+        return new Reservation(granted);
+    }
+
+    private synchronized void release(long bytes) {
+        // Возвращает память; когда все резервы возвращены, лимит восстанавливается
+        reserved -= bytes;
+        if (reserved == 0) {
+            capacity = initialCapacity;
+        }
+    }
+
+    final class Reservation implements AutoCloseable {
+        // Выделенный объем памяти; возвращается распорядителю при закрытии
+        private final long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            // Повторное закрытие ничего не делает
+            synchronized (MemoryGovernor.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            release(bytes);
+        }
+    }
+}
\ No newline at end of file
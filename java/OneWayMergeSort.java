@@ -1,128 +1,161 @@
-import javax.swing.*;
 import java.awt.Color;
 import java.io.*;
-import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class OneWayMergeSort extends BaseExternalSorter {
     private static final Color PROGRESS_COLOR = new Color(0, 0, 150);
 
     @Override
-    public void sort(String inputFile, String outputFile, Coursework gui) throws IOException {
+    public void sort(SortJob job) throws IOException {
         // Основной метод сортировки однонаправленным слиянием
-        this.gui = gui;
-        gui.updateStatus(getAlgorithmName() + ": запуск...");
+        startJob(job);
 
         // Разделяет файл на отсортированные части
-        gui.updateOneWayProgress(0, "Разделение файла...");
-        List<File> chunks = splitFileIntoSortedChunks(inputFile, "oneway_chunk_", 0, 50);
-        gui.updateOneWayProgress(50, "Файл разделен на " + chunks.size() + " чанков");
+        List<File> chunks = splitFileIntoSortedChunks(job.getInputFile(), "oneway_chunk_", 0, 50);
 
         // Выполняет слияние частей попарно
-        gui.updateOneWayProgress(50, "Начало слияния...");
-        mergeChunks(chunks, outputFile, gui);
+        mergeChunks(chunks, job.getOutputFile());
 
         // Удаляет временные файлы
         cleanupTempFiles(chunks);
-        gui.updateOneWayProgress(100, getAlgorithmName() + " завершен!");
-        gui.updateOneWayTimeLabel();
+        finishJob();
     }
 
-    private void mergeChunks(List<File> chunks, String outputFile, Coursework gui) throws IOException {
-        // Рекурсивно сливает отсортированные чанки попарно
+    private void mergeChunks(List<File> chunks, String outputFile) throws IOException {
+        // Сливает отсортированные чанки попарно, каждый раз выбирая две соседние серии с наименьшим
+        // суммарным размером: большие серии переписываются реже, а слияние только соседних серий
+        // сохраняет порядок равных слов из входного файла
         if (chunks.isEmpty()) {
             return;
         }
 
         if (chunks.size() == 1) {
-            // Копирует единственный чанк напрямую в выходной файл
-            Files.copy(chunks.get(0).toPath(), Paths.get(outputFile), StandardCopyOption.REPLACE_EXISTING);
-            gui.updateOneWayProgress(100);
+            // Переписывает единственный чанк напрямую в выходной файл
+            writeRunAsText(chunks.get(0), outputFile);
             return;
         }
 
-        List<File> currentFiles = new ArrayList<>(chunks);
-        int totalMerges = currentFiles.size() - 1;
-        int completedMerges = 0;
-        int stage = 1;
-
-        // Последовательно сливает файлы попарно пока не останется один файл
-        while (currentFiles.size() > 1) {
-            gui.updateOneWayProgress(50 + (completedMerges * 50) / totalMerges,
-                    "Этап " + stage + " (файлов: " + currentFiles.size() + ")");
-
-            List<File> mergedFiles = new ArrayList<>();
-            for (int i = 0; i < currentFiles.size(); i += 2) {
-                if (i + 1 < currentFiles.size()) {
-                    // Сливает два соседних файла
-                    File mergedFile = mergeTwoFiles(currentFiles.get(i), currentFiles.get(i + 1),
-                            "oneway_merge_" + stage + "_" + i);
-                    mergedFiles.add(mergedFile);
-                    completedMerges++;
-                } else {
-                    // Если нечетное количество файлов, оставляет последний без изменений
-                    mergedFiles.add(currentFiles.get(i));
-                }
+        // Серии в порядке входного файла с размерами - байтами слов из заголовка серии. Размер результата
+        // слияния известен до его окончания (сумма размеров сливаемых серий), поэтому в список сразу
+        // попадают и серии, которые еще сливаются
+        List<Run> runs = new ArrayList<>();
+        for (File chunk : chunks) {
+            runs.add(new Run(CompletableFuture.completedFuture(chunk), RunFormat.readInfo(chunk).payloadBytes));
+        }
+
+        int totalMerges = chunks.size() - 1;
+        progress.startPhase("Попарное слияние " + chunks.size() + " чанков", 50, 100,
+                SortProgress.Unit.STEPS, totalMerges);
+
+        // Каждое слияние начинается, как только готовы обе его серии: порядок слияний тот же, что при
+        // последовательном слиянии, а независимые слияния выполняются одновременно
+        int threads = Math.max(1, Math.min(getMergeThreads(), chunks.size() / 2));
+        ExecutorService mergers = Executors.newFixedThreadPool(threads);
+        try {
+            while (runs.size() > 2) {
+                int index = findCheapestPair(runs);
+                Run left = runs.get(index);
+                Run right = runs.remove(index + 1);
+                CompletableFuture<File> merged = left.file.thenCombineAsync(right.file, (file1, file2) -> {
+                    try {
+                        File mergedFile = mergeTwoFiles(file1, file2, "oneway_merge_");
+                        progress.addDone(1);
+                        return mergedFile;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, mergers);
+                runs.set(index, new Run(merged, left.size + right.size));
+            }
+
+            // Последнее слияние сразу пишет выходной текстовый файл
+            File first = awaitRun(runs.get(0));
+            File second = awaitRun(runs.get(1));
+            mergeTwoRuns(first, second, openTextOutput(new File(outputFile), RunFormat.BLOCK_SIZE));
+            first.delete();
+            second.delete();
+            progress.addDone(1);
+        } finally {
+            mergers.shutdownNow();
+        }
+    }
 
-                gui.updateOneWayProgress(50 + (completedMerges * 50) / totalMerges,
-                        "Слияние " + completedMerges + "/" + totalMerges);
-                gui.updateOneWayTimeLabel();
+    private static int findCheapestPair(List<Run> runs) {
+        // Находит левую серию из пары соседних серий с наименьшим суммарным размером;
+        // при равных размерах выбирается самая левая пара
+        int best = 0;
+        long bestSize = Long.MAX_VALUE;
+        for (int i = 0; i + 1 < runs.size(); i++) {
+            long size = runs.get(i).size + runs.get(i + 1).size;
+            if (size < bestSize) {
+                best = i;
+                bestSize = size;
             }
-            currentFiles = mergedFiles;
-            stage++;
         }
+        return best;
+    }
 
-        // Перемещает финальный слитый файл в указанное место
-        if (!currentFiles.isEmpty()) {
-            Files.move(currentFiles.get(0).toPath(), Paths.get(outputFile), StandardCopyOption.REPLACE_EXISTING);
+    private static File awaitRun(Run run) throws IOException {
+        // Дожидается серии, пробрасывая ошибку слияния, в результате которого она получается
+        try {
+            return await(run.file);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private File mergeTwoFiles(File file1, File file2, String tempName) throws IOException {
-        // Сливает два отсортированных файла в один отсортированный файл
-        File tempFile = File.createTempFile(tempName, ".tmp");
-        tempFile.deleteOnExit();
+    File mergeTwoFiles(File file1, File file2, String tempName) throws IOException {
+        // Сливает две отсортированные серии в новую серию и удаляет исходные
+        File tempFile = createTempFile(tempName);
+        mergeTwoRuns(file1, file2, createRunWriter(tempFile, true, RunFormat.BLOCK_SIZE));
 
-        try (BufferedReader reader1 = new BufferedReader(new FileReader(file1));
-             BufferedReader reader2 = new BufferedReader(new FileReader(file2));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+        // Удаляет исходные файлы после слияния
+        file1.delete();
+        file2.delete();
 
-            String word1 = reader1.readLine();
-            String word2 = reader2.readLine();
+        return tempFile;
+    }
 
-            // Основной цикл слияния: выбирает минимальное слово из двух файлов
-            while (word1 != null && word2 != null) {
-                if (word1.compareToIgnoreCase(word2) <= 0) {
-                    writer.write(word1);
-                    writer.newLine();
-                    word1 = reader1.readLine();
+    private void mergeTwoRuns(File file1, File file2, RecordWriter output) throws IOException {
+        // Сливает две отсортированные серии, перенося байты слов без декодирования
+        try (RecordWriter writer = output;
+             RunReader reader1 = openRun(file1, RunFormat.BLOCK_SIZE);
+             RunReader reader2 = openRun(file2, RunFormat.BLOCK_SIZE)) {
+
+            boolean has1 = reader1.next();
+            boolean has2 = reader2.next();
+            // Префиксы ключей текущих слов: слова целиком сравниваются только при равных префиксах
+            long key1 = has1 ? reader1.prefixKey() : 0;
+            long key2 = has2 ? reader2.prefixKey() : 0;
+
+            // Основной цикл слияния: выбирает минимальное слово из двух серий, при равных словах -
+            // из первой серии, которая во входном файле идет раньше
+            while (has1 && has2) {
+                if (ByteWordOrder.compare(key1, reader1.buffer(), reader1.offset(), reader1.length(),
+                        key2, reader2.buffer(), reader2.offset(), reader2.length()) <= 0) {
+                    writer.write(reader1.buffer(), reader1.offset(), reader1.length());
+                    has1 = reader1.next();
+                    key1 = has1 ? reader1.prefixKey() : 0;
                 } else {
-                    writer.write(word2);
-                    writer.newLine();
-                    word2 = reader2.readLine();
+                    writer.write(reader2.buffer(), reader2.offset(), reader2.length());
+                    has2 = reader2.next();
+                    key2 = has2 ? reader2.prefixKey() : 0;
                 }
             }
 
-            // Дозаписывает оставшиеся слова из первого файла
-            while (word1 != null) {
-                writer.write(word1);
-                writer.newLine();
-                word1 = reader1.readLine();
+            // Дозаписывает оставшиеся слова из первой серии
+            while (has1) {
+                writer.write(reader1.buffer(), reader1.offset(), reader1.length());
+                has1 = reader1.next();
             }
 
-            // Дозаписывает оставшиеся слова из второго файла
-            while (word2 != null) {
-                writer.write(word2);
-                writer.newLine();
-                word2 = reader2.readLine();
+            // Дозаписывает оставшиеся слова из второй серии
+            while (has2) {
+                writer.write(reader2.buffer(), reader2.offset(), reader2.length());
+                has2 = reader2.next();
             }
         }
-
-        // Удаляет исходные файлы после слияния
-        file1.delete();
-        file2.delete();
-
-        return tempFile;
     }
 
     @Override
@@ -143,21 +176,15 @@ public class OneWayMergeSort extends BaseExternalSorter {
         return "one_way";
     }
 
-    @Override
-    protected void updateProgress(int value) {
-        // Обновляет прогресс в GUI
-        gui.updateOneWayProgress(value);
-    }
-
-    @Override
-    protected void updateProgress(int value, String status) {
-        // Обновляет прогресс в GUI с сообщением о статусе
-        gui.updateOneWayProgress(value, status);
-    }
+    private static class Run {
+        // Серия (или слияние, в результате которого она получится) и байты ее слов: для чанков из
+        // заголовка серии, для результата слияния - сумма размеров сливаемых серий
+        final CompletableFuture<File> file;
+        final long size;
 
-    @Override
-    protected void updateTimeLabel() {
-        // Обновляет метку времени в GUI
-        gui.updateOneWayTimeLabel();
+        Run(CompletableFuture<File> file, long size) {
+            this.file = file;
+            this.size = size;
+        }
     }
 }
\ No newline at end of file
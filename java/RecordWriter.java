@@ -0,0 +1,7 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+interface RecordWriter extends Closeable {
+    void write(byte[] buffer, int offset, int length) throws IOException;
+    // Записывает одно слово в UTF-8
+}
\ No newline at end of file
@@ -1,216 +1,130 @@
 import java.awt.Color;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 public class ReplacementSelectionSort extends BaseExternalSorter {
     private static final Color PROGRESS_COLOR = new Color(0, 100, 0);
-    private static final int REPLACEMENT_BUFFER_SIZE = 100000;
+    // Границы буфера замещающего выбора. Меньший буфер не стоит ждать у распорядителя памяти;
+    // в большем куча перестает помещаться в кэш процессора, и каждая операция с ней становится
+    // дороже, чем выигрыш от более длинных серий
+    private static final long MIN_BUFFER_BYTES = 1024 * 1024;
+    private static final long MAX_BUFFER_BYTES = 4 * 1024 * 1024;
 
     @Override
-    public void sort(String inputFile, String outputFile, Coursework gui) throws IOException {
+    public void sort(SortJob job) throws IOException {
         // Основной метод сортировки с замещающим выбором
-        this.gui = gui;
-        gui.updateStatus(getAlgorithmName() + ": запуск...");
+        startJob(job);
 
         // Создает отсортированные серии с помощью алгоритма замещающего выбора
-        gui.updateReplacementProgress(0, "Создание серий...");
-        List<File> series = replacementSelectionSort(inputFile, gui);
-        gui.updateReplacementProgress(60, "Создано " + series.size() + " серий");
+        List<File> series = replacementSelectionSort(job.getInputFile());
 
         // Сливает созданные серии в один файл
-        gui.updateReplacementProgress(60, "Слияние серий...");
-        kWayMerge(series, outputFile, gui);
+        mergeRuns(series, job.getOutputFile(), "Слияние " + series.size() + " серий", 60, 100);
 
         // Удаляет временные файлы
         cleanupTempFiles(series);
-        gui.updateReplacementProgress(100, getAlgorithmName() + " завершен!");
-        gui.updateReplacementTimeLabel();
+        finishJob();
     }
 
-    private List<File> replacementSelectionSort(String inputFile, Coursework gui) throws IOException {
+    List<File> replacementSelectionSort(String inputFile) throws IOException {
         // Реализует алгоритм замещающего выбора для создания отсортированных серий
         List<File> outputFiles = new ArrayList<>();
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            PriorityQueue<String> currentRun = new PriorityQueue<>();
-            PriorityQueue<String> nextRun = new PriorityQueue<>();
-            List<String> currentOutput = new ArrayList<>();
-
-            String lastOutput = null;
-            long totalWords = 0;
+        RunWriter currentOutput = null;
+        try (WordInput source = openWordSource(inputFile);
+             MemoryGovernor.Reservation memory = reserveMemory(MAX_BUFFER_BYTES, MIN_BUFFER_BYTES)) {
+            // Куча упорядочена по номеру серии, затем так же, как выходной файл, поэтому слова серии
+            // сразу пишутся в ее файл и серия не накапливается в памяти целиком. Размер буфера
+            // задается в байтах выданной памяти, а не в словах
+            SelectionHeap heap = new SelectionHeap(memory.getBytes());
+            int currentRun = 0;
+
+            // Последнее записанное слово и префикс его ключа: слова меньше него идут в следующую серию
+            byte[] lastOutput = new byte[64];
+            int lastLength = 0;
+            long lastKey = 0;
             long processedWords = 0;
 
-            // Подсчитывает общее количество слов для отслеживания прогресса
-            totalWords = countWordsInFile(inputFile);
+            // Прогресс создания серий - доля разобранных байт входного файла
+            progress.startPhase("Создание серий", 0, 60, SortProgress.Unit.BYTES, new File(inputFile).length());
 
             // Загружает начальную порцию данных в память
-            loadInitialBuffer(reader, currentRun, REPLACEMENT_BUFFER_SIZE);
-            processedWords = currentRun.size();
-
-            while (!currentRun.isEmpty() || !nextRun.isEmpty()) {
-                if (currentRun.isEmpty()) {
-                    // Сохраняет текущую серию в файл и начинает новую
-                    if (!currentOutput.isEmpty()) {
-                        File runFile = createSortedTempFile(currentOutput, "replacement_series_" + outputFiles.size());
-                        outputFiles.add(runFile);
-                        currentOutput.clear();
-                    }
-
-                    // Переключается на следующую серию
-                    PriorityQueue<String> temp = currentRun;
-                    currentRun = nextRun;
-                    nextRun = temp;
-                    lastOutput = null;
-
-                    gui.updateReplacementProgress((int)((processedWords * 60) / totalWords),
-                            "Начата серия " + (outputFiles.size() + 1));
-                }
-
-                String minElement = currentRun.poll();
-
-                if (lastOutput == null || minElement.compareTo(lastOutput) >= 0) {
-                    // Добавляет элемент в текущую серию
-                    currentOutput.add(minElement);
-                    lastOutput = minElement;
-
-                    // Читает следующий элемент из файла
-                    String nextLine = reader.readLine();
-                    if (nextLine != null) {
-                        String[] words = nextLine.split("\\s+");
-                        for (String word : words) {
-                            if (!word.trim().isEmpty()) {
-                                processedWords++;
-                                // Распределяет слово в текущую или следующую серию
-                                if (word.compareTo(lastOutput) >= 0) {
-                                    currentRun.offer(word);
-                                } else {
-                                    nextRun.offer(word);
-                                }
-
-                                if (processedWords % PROGRESS_UPDATE_INTERVAL == 0) {
-                                    gui.updateReplacementProgress((int)((processedWords * 60) / totalWords),
-                                            "Обработано " + processedWords + "/" + totalWords + " слов");
-                                    gui.updateReplacementTimeLabel();
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    // Отправляет элемент в следующую серию
-                    nextRun.offer(minElement);
+            while (source.next()) {
+                int length = source.utf8Length();
+                if (!heap.fits(length)) {
+                    source.pushBack();
+                    break;
                 }
+                byte[] buffer = source.utf8Buffer();
+                int offset = source.utf8Offset();
+                heap.push(buffer, offset, length, ByteWordOrder.prefixKey(buffer, offset, length), currentRun);
+                processedWords++;
             }
 
-            // Сохраняет последнюю серию
-            if (!currentOutput.isEmpty()) {
-                File runFile = createSortedTempFile(currentOutput, "replacement_series_" + outputFiles.size());
-                outputFiles.add(runFile);
-            }
-        }
-
-        return outputFiles;
-    }
-
-    private long countWordsInFile(String inputFile) throws IOException {
-        // Подсчитывает общее количество слов в файле
-        long count = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] words = line.split("\\s+");
-                for (String word : words) {
-                    if (!word.trim().isEmpty()) {
-                        count++;
-                    }
+            while (!heap.isEmpty()) {
+                if (heap.run() != currentRun) {
+                    // Закрывает файл текущей серии: в куче остались только слова следующей серии
+                    currentOutput.close();
+                    currentOutput = null;
+                    currentRun = heap.run();
                 }
-            }
-        }
-        return count;
-    }
 
-    private void loadInitialBuffer(BufferedReader reader, PriorityQueue<String> buffer, int size) throws IOException {
-        // Загружает начальную порцию данных в приоритетную очередь
-        while (buffer.size() < size) {
-            String line = reader.readLine();
-            if (line == null) break;
-
-            String[] words = line.split("\\s+");
-            for (String word : words) {
-                if (!word.trim().isEmpty()) {
-                    buffer.offer(word);
-                    if (buffer.size() >= size) break;
+                // Добавляет наименьшее слово в текущую серию
+                if (currentOutput == null) {
+                    File runFile = createTempFile("replacement_series_" + outputFiles.size());
+                    outputFiles.add(runFile);
+                    currentOutput = createRunWriter(runFile, true, RunFormat.BLOCK_SIZE);
                 }
-            }
-        }
-    }
-
-    private void kWayMerge(List<File> chunks, String outputFile, Coursework gui) throws IOException {
-        // Выполняет многопутевое слияние серий (аналогично KWayMergeSort)
-        if (chunks.isEmpty()) {
-            return;
-        }
-
-        if (chunks.size() == 1) {
-            // Копирует единственную серию напрямую в выходной файл
-            Files.copy(chunks.get(0).toPath(), Paths.get(outputFile), StandardCopyOption.REPLACE_EXISTING);
-            gui.updateReplacementProgress(100);
-            return;
-        }
-
-        PriorityQueue<FileWord> priorityQueue = new PriorityQueue<>();
-        List<BufferedReader> readers = new ArrayList<>();
-
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile))) {
-            // Инициализирует приоритетную очередь первыми словами из каждой серии
-            for (File file : chunks) {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
-                readers.add(reader);
-
-                String firstWord = reader.readLine();
-                if (firstWord != null) {
-                    priorityQueue.offer(new FileWord(firstWord, reader));
-                }
-            }
-
-            long totalWords = estimateTotalWords(chunks);
-            long processedWords = 0;
-
-            gui.updateReplacementProgress(60, "Слияние " + chunks.size() + " серий");
-
-            // Основной цикл многопутевого слияния
-            while (!priorityQueue.isEmpty()) {
-                FileWord minWord = priorityQueue.poll();
-                writer.write(minWord.word);
-                writer.newLine();
-                processedWords++;
-
-                if (processedWords % PROGRESS_UPDATE_INTERVAL == 0) {
-                    int progress = 60 + (int)((processedWords * 40) / totalWords);
-                    gui.updateReplacementProgress(progress,
-                            "Обработано " + processedWords + "/" + totalWords + " слов");
-                    gui.updateReplacementTimeLabel();
+                lastLength = heap.length();
+                if (lastLength > lastOutput.length) {
+                    lastOutput = new byte[Math.max(lastLength, 2 * lastOutput.length)];
                 }
-
-                String nextWord = minWord.reader.readLine();
-                if (nextWord != null) {
-                    priorityQueue.offer(new FileWord(nextWord, minWord.reader));
+                System.arraycopy(heap.buffer(), heap.offset(), lastOutput, 0, lastLength);
+                lastKey = heap.key();
+                currentOutput.write(lastOutput, 0, lastLength);
+                heap.poll();
+
+                // Читает следующие слова из файла, пока буфер не заполнится
+                while (source.next()) {
+                    int length = source.utf8Length();
+                    if (!heap.fits(length)) {
+                        source.pushBack();
+                        break;
+                    }
+                    byte[] buffer = source.utf8Buffer();
+                    int offset = source.utf8Offset();
+                    long key = ByteWordOrder.prefixKey(buffer, offset, length);
+                    processedWords++;
+                    // Распределяет слово в текущую или следующую серию
+                    boolean current = ByteWordOrder.compare(key, buffer, offset, length,
+                            lastKey, lastOutput, 0, lastLength) >= 0;
+                    heap.push(buffer, offset, length, key, current ? currentRun : currentRun + 1);
+
+                    if (processedWords % PROGRESS_UPDATE_INTERVAL == 0) {
+                        progress.setDone(source.position());
+                    }
                 }
             }
 
-            gui.updateReplacementProgress(100, "Слияние завершено");
-        } finally {
-            // Закрывает все открытые потоки чтения
-            for (BufferedReader reader : readers) {
+            // Сохраняет последнюю серию
+            if (currentOutput != null) {
+                currentOutput.close();
+                currentOutput = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Удаляет уже созданные серии
+            if (currentOutput != null) {
                 try {
-                    reader.close();
-                } catch (IOException e) {
-                    // Игнорирует ошибки при закрытии потоков
+                    currentOutput.close();
+                } catch (IOException closeError) {
+                    e.addSuppressed(closeError);
                 }
             }
+            cleanupTempFiles(outputFiles);
+            throw e;
         }
+
+        return outputFiles;
     }
 
     @Override
@@ -231,38 +145,178 @@ public class ReplacementSelectionSort extends BaseExternalSorter {
         return "replacement";
     }
 
-    @Override
-    protected void updateProgress(int value) {
-        // Обновляет прогресс в GUI
-        gui.updateReplacementProgress(value);
-    }
+    private static class SelectionHeap {
+        // Буфер замещающего выбора: слова в UTF-8 лежат подряд в массиве-арене, а двоичная куча хранит
+        // записи из номера серии, префикса ключа (см. ByteWordOrder.prefixKey), адреса и длины слова
+        // в арене. Место вынутых слов возвращается уплотнением: живые слова копируются во второй
+        // массив того же размера, и массивы меняются местами
+        private static final int INITIAL_CAPACITY = 1024;
+        // Байт на запись кучи: номер серии (int), префикс ключа (long), адрес (int) и длина (int)
+        private static final int ENTRY_BYTES = 20;
+
+        private byte[] data;
+        private byte[] spare;
+        // Конец занятой части арены и сумма длин слов в куче
+        private int top;
+        private long liveBytes;
+
+        private final int maxEntries;
+        private int[] runs;
+        private long[] keys;
+        private int[] offsets;
+        private int[] lengths;
+        private int size;
+
+        SelectionHeap(long maxBytes) {
+            // Арена с запасным массивом занимают половину памяти, записи кучи - вторую половину
+            int dataCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, maxBytes / 4));
+            this.data = new byte[dataCapacity];
+            this.spare = new byte[dataCapacity];
+            this.maxEntries = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, maxBytes / 2 / ENTRY_BYTES));
+            int capacity = Math.min(maxEntries, INITIAL_CAPACITY);
+            this.runs = new int[capacity];
+            this.keys = new long[capacity];
+            this.offsets = new int[capacity];
+            this.lengths = new int[capacity];
+        }
 
-    @Override
-    protected void updateProgress(int value, String status) {
-        // Обновляет прогресс в GUI с сообщением о статусе
-        gui.updateReplacementProgress(value, status);
-    }
+        boolean fits(int length) {
+            // Проверяет, поместится ли еще одно слово. Слова занимают не больше половины арены, поэтому
+            // уплотнение освобождает хотя бы половину арены; первое слово помещается всегда
+            return size == 0 || (size < maxEntries && liveBytes + length <= data.length / 2);
+        }
 
-    @Override
-    protected void updateTimeLabel() {
-        // Обновляет метку времени в GUI
-        gui.updateReplacementTimeLabel();
-    }
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int run() {
+            return runs[0];
+        }
+
+        long key() {
+            return keys[0];
+        }
 
-    private static class FileWord implements Comparable<FileWord> {
-        // Вспомогательный класс для хранения слова и соответствующего потока чтения
-        String word;
-        BufferedReader reader;
+        byte[] buffer() {
+            return data;
+        }
+
+        int offset() {
+            return offsets[0];
+        }
+
+        int length() {
+            return lengths[0];
+        }
 
-        FileWord(String word, BufferedReader reader) {
-            this.word = word;
-            this.reader = reader;
+        void push(byte[] buffer, int offset, int length, long key, int run) {
+            // Копирует слово в арену и добавляет его запись в кучу
+            if (top + length > data.length) {
+                compact(length);
+            }
+            if (size == runs.length) {
+                grow();
+            }
+            System.arraycopy(buffer, offset, data, top, length);
+            runs[size] = run;
+            keys[size] = key;
+            offsets[size] = top;
+            lengths[size] = length;
+            top += length;
+            liveBytes += length;
+
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        void poll() {
+            // Удаляет наименьшее слово; его байты в арене остаются до следующего добавления слова
+            liveBytes -= lengths[0];
+            size--;
+            if (size == 0) {
+                top = 0;
+                return;
+            }
+            swap(0, size);
+            int i = 0;
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && less(left, smallest)) {
+                    smallest = left;
+                }
+                if (right < size && less(right, smallest)) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    break;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private boolean less(int first, int second) {
+            // Сравнивает записи по номеру серии, затем по префиксам ключей и только при равных префиксах -
+            // слова целиком
+            if (runs[first] != runs[second]) {
+                return runs[first] < runs[second];
+            }
+            return ByteWordOrder.compare(keys[first], data, offsets[first], lengths[first],
+                    keys[second], data, offsets[second], lengths[second]) < 0;
+        }
+
+        private void swap(int first, int second) {
+            int run = runs[first];
+            runs[first] = runs[second];
+            runs[second] = run;
+            long key = keys[first];
+            keys[first] = keys[second];
+            keys[second] = key;
+            int offset = offsets[first];
+            offsets[first] = offsets[second];
+            offsets[second] = offset;
+            int length = lengths[first];
+            lengths[first] = lengths[second];
+            lengths[second] = length;
+        }
+
+        private void compact(int length) {
+            // Переносит слова кучи в начало запасного массива; если и после этого слово длиной length
+            // не помещается (оно длиннее половины арены), арена увеличивается под него
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(data, offsets[i], spare, position, lengths[i]);
+                offsets[i] = position;
+                position += lengths[i];
+            }
+            byte[] compacted = spare;
+            spare = data;
+            data = compacted;
+            top = position;
+            if (top + length > data.length) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * data.length, (long) top + length));
+                data = Arrays.copyOf(data, capacity);
+                spare = new byte[capacity];
+            }
         }
 
-        @Override
-        public int compareTo(FileWord other) {
-            // Сравнивает слова без учета регистра для корректной сортировки
-            return this.word.compareToIgnoreCase(other.word);
+        private void grow() {
+            // Увеличивает массивы записей в полтора раза, но не больше, чем позволяет лимит памяти
+            int capacity = Math.max(size + 1, Math.min(maxEntries, size + (size >> 1)));
+            runs = Arrays.copyOf(runs, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+final class RunFormat {
+    // Формат временных файлов (серий):
+    //   заголовок HEADER_SIZE байт: магическое число, версия, флаги, кодек, количество записей,
+    //     суммарный размер слов, количество блоков, смещение индекса;
+    //   блоки: длина на диске (int), длина без сжатия (int), записи "длина (varint) + слово в UTF-8",
+    //     сжатые кодеком из заголовка;
+    //   индекс: минимальное и максимальное слово, затем записи индекса
+    //     "смещение блока (long), номер первой записи блока (long), первое слово блока"
+    static final int MAGIC = 0x52554E31;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 36;
+    // Размер блока записей
+    static final int BLOCK_SIZE = 64 * 1024;
+    // Запись индекса добавляется не чаще, чем через INDEX_INTERVAL байт серии и не чаще, чем через
+    // INDEX_KEY_RATIO длин индексируемого слова, поэтому индекс занимает не больше 1/64 серии
+    static final int INDEX_INTERVAL = 64 * 1024;
+    static final int INDEX_KEY_RATIO = 64;
+    // Флаг отсортированной серии (у неотсортированных файлов нет минимального и максимального слова)
+    static final byte FLAG_SORTED = 1;
+    // Кодек блоков: без сжатия или Deflate
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_DEFLATE = 1;
+
+    private RunFormat() {
+    }
+
+    static class Info {
+        // Метаданные серии из заголовка и (при загрузке индекса) из индекса
+        boolean sorted;
+        byte codec;
+        long recordCount;
+        long payloadBytes;
+        int blockCount;
+        long indexOffset;
+
+        byte[] minKey;
+        byte[] maxKey;
+        long[] entryOffsets;
+        long[] entryRecords;
+        byte[][] entryKeys;
+
+        int findEntry(long record) {
+            // Номер последней записи индекса, блок которой начинается не позже записи record
+            int lo = 0;
+            int hi = entryRecords.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (entryRecords[mid] <= record) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+    static Info readHeader(DataInput in, File file) throws IOException {
+        // Читает и проверяет заголовок серии
+        if (in.readInt() != MAGIC) {
+            throw new IOException("не является файлом серии: " + file);
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("неподдерживаемая версия серии " + version + ": " + file);
+        }
+        Info info = new Info();
+        info.sorted = (in.readByte() & FLAG_SORTED) != 0;
+        info.codec = in.readByte();
+        in.readByte();
+        info.recordCount = in.readLong();
+        info.payloadBytes = in.readLong();
+        info.blockCount = in.readInt();
+        info.indexOffset = in.readLong();
+        return info;
+    }
+
+    static Info readInfo(File file) throws IOException {
+        // Читает только заголовок серии
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return readHeader(in, file);
+        }
+    }
+
+    static Info readIndex(File file) throws IOException {
+        // Читает заголовок и индекс серии
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            Info info = readHeader(in, file);
+            in.seek(info.indexOffset);
+            info.minKey = readKey(in);
+            info.maxKey = readKey(in);
+            int entries = in.readInt();
+            info.entryOffsets = new long[entries];
+            info.entryRecords = new long[entries];
+            info.entryKeys = new byte[entries][];
+            for (int i = 0; i < entries; i++) {
+                info.entryOffsets[i] = in.readLong();
+                info.entryRecords[i] = in.readLong();
+                info.entryKeys[i] = readKey(in);
+            }
+            return info;
+        }
+    }
+
+    private static byte[] readKey(DataInput in) throws IOException {
+        // Читает слово индекса: длина (int) и байты
+        byte[] key = new byte[in.readInt()];
+        in.readFully(key);
+        return key;
+    }
+}
\ No newline at end of file
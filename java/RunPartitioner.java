@@ -0,0 +1,80 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+class RunPartitioner {
+    private RunPartitioner() {
+    }
+
+    static List<byte[]> sampleSplitters(List<RunFormat.Info> runs, int partitions) {
+        // Выбирает partitions-1 разделителей среди слов индексов серий: записи индекса
+        // расставлены равномерно по байтам, поэтому диапазоны получаются близкими по размеру
+        List<byte[]> samples = new ArrayList<>();
+        for (RunFormat.Info run : runs) {
+            for (byte[] key : run.entryKeys) {
+                samples.add(key);
+            }
+        }
+        return chooseSplitters(samples, partitions);
+    }
+
+    static List<byte[]> chooseSplitters(List<byte[]> samples, int partitions) {
+        // Делит упорядоченную выборку на partitions равных частей и возвращает различные
+        // слова на их границах (выборка сортируется на месте)
+        samples.sort(ByteWordOrder::compare);
+        List<byte[]> splitters = new ArrayList<>();
+        for (int p = 1; p < partitions && !samples.isEmpty(); p++) {
+            byte[] splitter = samples.get((int) ((long) samples.size() * p / partitions));
+            // Одинаковые разделители дали бы пустые диапазоны
+            if (splitters.isEmpty() || ByteWordOrder.compare(splitters.get(splitters.size() - 1), splitter) < 0) {
+                splitters.add(splitter);
+            }
+        }
+        return splitters;
+    }
+
+    static long[] splitRecords(File run, RunFormat.Info info, List<byte[]> splitters,
+                               SortStatistics statistics) throws IOException {
+        // Возвращает границы диапазонов в серии: записи records[p]..records[p+1]-1 относятся к диапазону p.
+        // Граница - первая запись со словом больше разделителя; ее поиск начинается с последнего
+        // проиндексированного блока, первое слово которого не больше разделителя
+        long[] records = new long[splitters.size() + 2];
+        records[splitters.size() + 1] = info.recordCount;
+        long from = 0;
+        for (int i = 0; i < splitters.size(); i++) {
+            byte[] splitter = splitters.get(i);
+            int entry = lastEntryNotAfter(info, splitter);
+            long start = Math.max(from, entry >= 0 ? info.entryRecords[entry] : 0);
+            from = info.recordCount;
+            try (RunReader reader = new RunReader(run, info, statistics, RunFormat.BLOCK_SIZE, start, info.recordCount)) {
+                while (reader.next()) {
+                    if (ByteWordOrder.compare(reader.buffer(), reader.offset(), reader.length(),
+                            splitter, 0, splitter.length) > 0) {
+                        from = reader.nextRecordIndex() - 1;
+                        break;
+                    }
+                }
+            }
+            records[i + 1] = from;
+        }
+        return records;
+    }
+
+    private static int lastEntryNotAfter(RunFormat.Info info, byte[] key) {
+        // Номер последней записи индекса со словом не больше key или -1
+        int lo = 0;
+        int hi = info.entryKeys.length - 1;
+        int result = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ByteWordOrder.compare(info.entryKeys[mid], key) <= 0) {
+                result = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return result;
+    }
+}
\ No newline at end of file
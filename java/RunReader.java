@@ -0,0 +1,175 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+class RunReader implements Closeable {
+    private final DataInputStream in;
+    private final RunFormat.Info info;
+    private final BlockCodec codec;
+
+    // Текущий блок и положение следующей записи в нем
+    private byte[] block = new byte[RunFormat.BLOCK_SIZE];
+    private int blockLength;
+    private int position;
+    // Сжатый блок, прочитанный с диска
+    private byte[] compressed = new byte[0];
+    // Байты блоков, которые еще не прочитаны
+    private long remainingBytes;
+
+    // Номер следующей записи серии и номер записи, на которой чтение останавливается
+    private long recordIndex;
+    private final long endRecord;
+
+    // Текущая запись
+    private int recordOffset;
+    private int recordLength;
+
+    RunReader(File file, SortStatistics statistics, int bufferSize) throws IOException {
+        // Открывает серию для чтения всех записей подряд
+        FileInputStream stream = new FileInputStream(file);
+        this.in = new DataInputStream(new BufferedInputStream(count(stream, statistics), bufferSize));
+        try {
+            this.info = RunFormat.readHeader(in, file);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        this.codec = createCodec(info.codec);
+        this.remainingBytes = info.indexOffset - RunFormat.HEADER_SIZE;
+        this.endRecord = info.recordCount;
+    }
+
+    RunReader(File file, RunFormat.Info info, SortStatistics statistics, int bufferSize,
+              long startRecord, long endRecord) throws IOException {
+        // Открывает серию для чтения записей [startRecord, endRecord): переходит к ближайшему
+        // проиндексированному блоку и пропускает записи до startRecord
+        this.info = info;
+        this.endRecord = endRecord;
+        this.codec = BlockCodec.create(info.codec);
+        int entry = info.findEntry(startRecord);
+        long offset = info.entryOffsets.length > 0 ? info.entryOffsets[entry] : info.indexOffset;
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            stream.getChannel().position(offset);
+        } catch (IOException e) {
+            codec.close();
+            stream.close();
+            throw e;
+        }
+        this.in = new DataInputStream(new BufferedInputStream(count(stream, statistics), bufferSize));
+        this.remainingBytes = info.indexOffset - offset;
+        this.recordIndex = info.entryRecords.length > 0 ? info.entryRecords[entry] : info.recordCount;
+        try {
+            while (recordIndex < startRecord && next()) {
+                // Пропускает записи до начала диапазона
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private BlockCodec createCodec(byte id) throws IOException {
+        // Кодек блоков серии; при неизвестном кодеке файл закрывается
+        try {
+            return BlockCodec.create(id);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static InputStream count(InputStream stream, SortStatistics statistics) {
+        return statistics != null ? statistics.countReads(stream) : stream;
+    }
+
+    boolean next() throws IOException {
+        // Переходит к следующей записи; false - записи закончились
+        if (recordIndex >= endRecord) {
+            return false;
+        }
+        if (position >= blockLength && !readBlock()) {
+            return false;
+        }
+        int length = 0;
+        int shift = 0;
+        byte value;
+        do {
+            value = block[position++];
+            length |= (value & 0x7F) << shift;
+            shift += 7;
+        } while (value < 0);
+        recordOffset = position;
+        recordLength = length;
+        position += length;
+        recordIndex++;
+        return true;
+    }
+
+    private boolean readBlock() throws IOException {
+        // Читает следующий блок серии
+        if (remainingBytes <= 0) {
+            return false;
+        }
+        int storedLength = in.readInt();
+        int rawLength = in.readInt();
+        if (rawLength > block.length) {
+            block = new byte[rawLength];
+        }
+        if (codec == BlockCodec.NONE) {
+            in.readFully(block, 0, storedLength);
+        } else {
+            if (compressed.length < storedLength) {
+                compressed = new byte[storedLength];
+            }
+            in.readFully(compressed, 0, storedLength);
+            codec.decompress(compressed, storedLength, block, rawLength);
+        }
+        blockLength = rawLength;
+        position = 0;
+        remainingBytes -= 8 + storedLength;
+        return true;
+    }
+
+    byte[] buffer() {
+        return block;
+    }
+
+    int offset() {
+        return recordOffset;
+    }
+
+    int length() {
+        return recordLength;
+    }
+
+    long prefixKey() {
+        // Префикс ключа текущего слова для быстрого сравнения (см. ByteWordOrder.prefixKey)
+        return ByteWordOrder.prefixKey(block, recordOffset, recordLength);
+    }
+
+    String word() {
+        // Текущая запись в виде строки
+        return new String(block, recordOffset, recordLength, StandardCharsets.UTF_8);
+    }
+
+    long nextRecordIndex() {
+        // Номер записи, которую вернет следующий вызов next()
+        return recordIndex;
+    }
+
+    RunFormat.Info getInfo() {
+        return info;
+    }
+
+    @Override
+    public void close() throws IOException {
+        codec.close();
+        in.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,207 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class RunWriter implements RecordWriter {
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private final SortStatistics statistics;
+    private final boolean sorted;
+    private final BlockCodec codec;
+    // Размер блока: обычно RunFormat.BLOCK_SIZE, меньше - когда одновременно открыто много серий
+    private final int blockSize;
+
+    // Текущий блок записей
+    private byte[] block;
+    private int blockLength;
+    // Сжатый блок
+    private byte[] compressed = new byte[0];
+    // Положение последней записи блока (из нее берется максимальное слово серии)
+    private int lastRecordOffset = -1;
+    private int lastRecordLength;
+
+    private long recordCount;
+    private long payloadBytes;
+    private int blockCount;
+    // Смещение в файле, с которого начнется следующий блок
+    private long fileOffset = RunFormat.HEADER_SIZE;
+
+    private byte[] minKey = new byte[0];
+    private byte[] maxKey = new byte[0];
+    private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    private final DataOutputStream index = new DataOutputStream(indexBytes);
+    private int indexEntries;
+    private long lastIndexedOffset;
+
+    RunWriter(File target, SortStatistics statistics, boolean sorted, int bufferSize) throws IOException {
+        // Создает серию без сжатия блоков
+        this(target, statistics, sorted, bufferSize, BlockCodec.NONE);
+    }
+
+    RunWriter(File target, SortStatistics statistics, boolean sorted, int bufferSize,
+              BlockCodec codec) throws IOException {
+        // Создает серию с блоками обычного размера
+        this(target, statistics, sorted, bufferSize, RunFormat.BLOCK_SIZE, codec);
+    }
+
+    RunWriter(File target, SortStatistics statistics, boolean sorted, int bufferSize, int blockSize,
+              BlockCodec codec) throws IOException {
+        // Создает серию; заголовок записывается при закрытии, когда известны все счетчики
+        this.file = new FileOutputStream(target);
+        this.statistics = statistics;
+        this.sorted = sorted;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        try {
+            file.getChannel().position(RunFormat.HEADER_SIZE);
+        } catch (IOException e) {
+            codec.close();
+            file.close();
+            throw e;
+        }
+        OutputStream counted = statistics != null ? statistics.countWrites(file) : file;
+        this.out = new DataOutputStream(new BufferedOutputStream(counted, bufferSize));
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        // Добавляет слово в текущий блок, записывая заполненный блок на диск
+        int needed = varintSize(length) + length;
+        if (blockLength > 0 && blockLength + needed > block.length) {
+            flushBlock();
+        }
+        if (needed > block.length) {
+            // Слово не помещается в блок: блок увеличивается под одно слово
+            block = new byte[needed];
+        }
+        if (blockLength == 0) {
+            addIndexEntry(buffer, offset, length);
+        }
+        if (recordCount == 0 && sorted) {
+            minKey = Arrays.copyOfRange(buffer, offset, offset + length);
+        }
+
+        int value = length;
+        while ((value & ~0x7F) != 0) {
+            block[blockLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[blockLength++] = (byte) value;
+        System.arraycopy(buffer, offset, block, blockLength, length);
+        lastRecordOffset = blockLength;
+        lastRecordLength = length;
+        blockLength += length;
+        recordCount++;
+        payloadBytes += length;
+    }
+
+    void write(String word) throws IOException {
+        // Записывает слово, заданное строкой
+        byte[] bytes = ByteWordOrder.encode(word);
+        write(bytes, 0, bytes.length);
+    }
+
+    private void addIndexEntry(byte[] buffer, int offset, int length) throws IOException {
+        // Индексирует первое слово блока, если с предыдущей записи индекса прошло достаточно байт
+        if (indexEntries > 0 && fileOffset - lastIndexedOffset < Math.max(RunFormat.INDEX_INTERVAL,
+                (long) RunFormat.INDEX_KEY_RATIO * length)) {
+            return;
+        }
+        index.writeLong(fileOffset);
+        index.writeLong(recordCount);
+        index.writeInt(length);
+        index.write(buffer, offset, length);
+        indexEntries++;
+        lastIndexedOffset = fileOffset;
+    }
+
+    private void flushBlock() throws IOException {
+        // Записывает текущий блок на диск
+        if (sorted && lastRecordOffset >= 0) {
+            maxKey = Arrays.copyOfRange(block, lastRecordOffset, lastRecordOffset + lastRecordLength);
+        }
+        int storedLength = blockLength;
+        byte[] stored = block;
+        if (codec != BlockCodec.NONE) {
+            int capacity = codec.maxCompressedLength(blockLength);
+            if (compressed.length < capacity) {
+                compressed = new byte[capacity];
+            }
+            storedLength = codec.compress(block, blockLength, compressed);
+            stored = compressed;
+        }
+        out.writeInt(storedLength);
+        out.writeInt(blockLength);
+        out.write(stored, 0, storedLength);
+        if (statistics != null) {
+            statistics.addSpillBytes(blockLength, storedLength);
+        }
+        fileOffset += 8 + storedLength;
+        blockCount++;
+        blockLength = 0;
+        lastRecordOffset = -1;
+        if (block.length > blockSize) {
+            block = new byte[blockSize];
+        }
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Дописывает последний блок и индекс, затем заполняет заголовок
+        try {
+            if (blockLength > 0) {
+                flushBlock();
+            }
+            long indexOffset = fileOffset;
+            out.writeInt(minKey.length);
+            out.write(minKey);
+            out.writeInt(maxKey.length);
+            out.write(maxKey);
+            out.writeInt(indexEntries);
+            indexBytes.writeTo(out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(RunFormat.HEADER_SIZE);
+            header.putInt(RunFormat.MAGIC);
+            header.put(RunFormat.VERSION);
+            header.put(sorted ? RunFormat.FLAG_SORTED : 0);
+            header.put(codec.getId());
+            header.put((byte) 0);
+            header.putLong(recordCount);
+            header.putLong(payloadBytes);
+            header.putInt(blockCount);
+            header.putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                file.getChannel().write(header, header.position());
+            }
+            if (statistics != null) {
+                statistics.addBytesWritten(RunFormat.HEADER_SIZE);
+            }
+        } finally {
+            codec.close();
+            out.close();
+        }
+    }
+
+    private static int varintSize(int value) {
+        // Количество байт длины слова в формате varint
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
\ No newline at end of file
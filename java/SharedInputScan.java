@@ -0,0 +1,264 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class SharedInputScan implements AutoCloseable {
+    // Слова передаются подписчикам пачками: байты слов в UTF-8 подряд и границы слов
+    private static final int BATCH_BYTES = 256 * 1024;
+    private static final int BATCH_WORDS = 16 * 1024;
+    // Пачек в очереди одного подписчика: когда очередь самого медленного подписчика заполнена,
+    // чтение файла приостанавливается
+    private static final int QUEUE_BATCHES = 16;
+    // Период, с которым заблокированный поток проверяет, не закрыт ли подписчик
+    private static final long POLL_MILLIS = 100;
+
+    private final File file;
+    private final long maxWordBytes;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final Thread scanner;
+    private int nextSubscription;
+
+    SharedInputScan(File file, int subscribers, long maxWordBytes) {
+        // Готовит чтение файла для заданного числа подписчиков: каждый получит все слова файла.
+        // Подписчик, который не успевает, тормозит чтение, но остальные получают слова без повторного
+        // разбора файла; закрытый подписчик больше не получает пачки
+        this.file = file;
+        this.maxWordBytes = maxWordBytes;
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(new Subscription());
+        }
+        this.scanner = new Thread(this::scan, "shared-input-scan");
+        this.scanner.setDaemon(true);
+    }
+
+    static SharedInputScan attach(File file, List<SortJob> jobs) {
+        // Создает общее чтение файла и подключает к нему задания. Задания работают одновременно,
+        // поэтому лимит памяти каждого не больше его доли общего лимита распорядителя: иначе одно
+        // задание могло бы занять всю память, пока остальные ждут ее, а общее чтение ждет их.
+        // Слово может занимать не больше четверти наименьшего лимита, как и при чтении файла самим алгоритмом
+        long share = Math.max(1, MemoryGovernor.shared().getCapacity() / jobs.size());
+        long maxWordBytes = Long.MAX_VALUE;
+        for (SortJob job : jobs) {
+            job.setMemoryBudget(Math.min(job.getMemoryBudget(), share));
+            maxWordBytes = Math.min(maxWordBytes, job.getMemoryBudget() / 4);
+        }
+        SharedInputScan scan = new SharedInputScan(file, jobs.size(), maxWordBytes);
+        for (SortJob job : jobs) {
+            job.setSharedInput(scan.subscribe());
+        }
+        return scan;
+    }
+
+    void start() {
+        // Запускает чтение файла в отдельном потоке
+        scanner.start();
+    }
+
+    synchronized WordInput subscribe() {
+        // Возвращает следующего подписчика; подписчиков столько, сколько задано при создании
+        if (nextSubscription >= subscriptions.size()) {
+            throw new IllegalStateException("все подписчики общего чтения уже выданы");
+        }
+        return subscriptions.get(nextSubscription++);
+    }
+
+    private void scan() {
+        // Разбирает файл один раз и раздает пачки слов всем открытым подписчикам
+        Batch last;
+        try (WordSource source = new WordSource(file, null, maxWordBytes)) {
+            Batch batch = new Batch();
+            while (source.next()) {
+                int length = source.utf8Length();
+                if (!batch.fits(length)) {
+                    if (!publish(batch)) {
+                        return;
+                    }
+                    batch = new Batch();
+                }
+                batch.add(source.utf8Buffer(), source.utf8Offset(), length, source.position());
+            }
+            if (batch.count > 0 && !publish(batch)) {
+                return;
+            }
+            last = Batch.END;
+        } catch (IOException | RuntimeException | Error e) {
+            last = Batch.failed(e);
+        } catch (InterruptedException e) {
+            // Чтение остановлено закрытием
+            return;
+        }
+        try {
+            publish(last);
+        } catch (InterruptedException e) {
+            // Чтение остановлено закрытием
+        }
+    }
+
+    private boolean publish(Batch batch) throws InterruptedException {
+        // Кладет пачку в очереди открытых подписчиков; false - все подписчики закрыты
+        boolean delivered = false;
+        for (Subscription subscription : subscriptions) {
+            while (!subscription.closed) {
+                if (subscription.queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    delivered = true;
+                    break;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    @Override
+    public void close() {
+        // Закрывает всех подписчиков и останавливает чтение
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        scanner.interrupt();
+    }
+
+    private static final class Batch {
+        // Пустая пачка - конец файла
+        static final Batch END = new Batch(0);
+
+        private byte[] data;
+        private int[] ends;
+        private int size;
+        private int count;
+        // Количество разобранных байт файла после последнего слова пачки
+        private long position;
+        // Ошибка чтения файла, которую получат подписчики
+        private Throwable error;
+
+        Batch() {
+            this(BATCH_WORDS);
+        }
+
+        private Batch(int words) {
+            this.data = new byte[words > 0 ? BATCH_BYTES : 0];
+            this.ends = new int[words];
+        }
+
+        static Batch failed(Throwable error) {
+            Batch batch = new Batch(0);
+            batch.error = error;
+            return batch;
+        }
+
+        boolean fits(int length) {
+            // Слово длиннее пачки помещается в пустую пачку, которая для него расширяется
+            return count < ends.length && (count == 0 || size + length <= data.length);
+        }
+
+        void add(byte[] buffer, int offset, int length, long position) {
+            if (size + length > data.length) {
+                data = Arrays.copyOf(data, size + length);
+            }
+            System.arraycopy(buffer, offset, data, size, length);
+            size += length;
+            ends[count++] = size;
+            this.position = position;
+        }
+    }
+
+    private static final class Subscription implements WordInput {
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        private volatile boolean closed;
+
+        // Текущая пачка и номер текущего слова в ней
+        private Batch batch;
+        private int index = -1;
+        private boolean finished;
+        private boolean repeat;
+
+        @Override
+        public boolean next() throws IOException {
+            // Переходит к следующему слову, дожидаясь следующей пачки от потока чтения
+            if (repeat) {
+                repeat = false;
+                return true;
+            }
+            if (closed) {
+                throw new IOException("общее чтение входного файла закрыто");
+            }
+            while (!finished && (batch == null || index + 1 >= batch.count)) {
+                if (batch != null && batch.error != null) {
+                    throw new IOException(batch.error.getMessage(), batch.error);
+                }
+                try {
+                    batch = queue.take();
+                    index = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("чтение входного файла прервано");
+                }
+                finished = batch == Batch.END;
+            }
+            if (finished) {
+                return false;
+            }
+            index++;
+            return true;
+        }
+
+        @Override
+        public void pushBack() {
+            repeat = true;
+        }
+
+        @Override
+        public byte[] buffer() {
+            return batch.data;
+        }
+
+        @Override
+        public int offset() {
+            return index == 0 ? 0 : batch.ends[index - 1];
+        }
+
+        @Override
+        public int length() {
+            return batch.ends[index] - offset();
+        }
+
+        @Override
+        public byte[] utf8Buffer() {
+            // Слова в пачке уже в UTF-8
+            return batch.data;
+        }
+
+        @Override
+        public int utf8Offset() {
+            return offset();
+        }
+
+        @Override
+        public int utf8Length() {
+            return length();
+        }
+
+        @Override
+        public String word() {
+            return new String(batch.data, offset(), length(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long position() {
+            return batch != null ? batch.position : 0;
+        }
+
+        @Override
+        public void close() {
+            // Отписывается от чтения: поток чтения больше не ждет места в очереди
+            closed = true;
+            queue.clear();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,426 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class SortBenchmarkRunner {
+    private static final String USAGE =
+            "Использование: java SortCli bench [параметры]\n" +
+            "  --inputs <файл,...>        входные файлы\n" +
+            "  --source <файл>            исходный файл для построения входов заданных размеров\n" +
+            "  --profile <имя,...>        сгенерировать входы заданных размеров (см. SortCli generate --help)\n" +
+            "  --sizes <размер,...>       размеры входов, например 16m,64m,256m (вместе с --source или --profile)\n" +
+            "  --seed <число>             начальное значение генератора для --profile (по умолчанию 42)\n" +
+            "  --algorithm <id,...|all>   алгоритмы (по умолчанию all)\n" +
+            "  --memory <размер,...>      лимиты памяти (по умолчанию 250m)\n" +
+            "  --spill-codec <id,...>     сжатие временных файлов: none, deflate (по умолчанию none)\n" +
+            "  --warmup <N>               прогревочные запуски (по умолчанию 1)\n" +
+            "  --repetitions <N>          измеряемые запуски (по умолчанию 5)\n" +
+            "  --temp-dir <путь>          директория для временных и выходных файлов\n" +
+            "  --csv <файл>               сохранить результаты в CSV\n" +
+            "  --json <файл>              сохранить результаты в JSON";
+
+    static class Measurement {
+        // Результат одного запуска алгоритма
+        long wallMillis;
+        long cpuMillis;
+        long bytesRead;
+        long bytesWritten;
+        long peakHeapBytes;
+        long spillRawBytes;
+        long spillStoredBytes;
+    }
+
+    static class CaseResult {
+        // Результаты всех запусков одного алгоритма на одном входе с одним лимитом памяти и кодеком
+        final String algorithmId;
+        final String inputName;
+        final long inputBytes;
+        final long memoryBudget;
+        final String spillCodec;
+        final List<Measurement> measurements = new ArrayList<>();
+
+        CaseResult(String algorithmId, String inputName, long inputBytes, long memoryBudget, String spillCodec) {
+            this.algorithmId = algorithmId;
+            this.inputName = inputName;
+            this.inputBytes = inputBytes;
+            this.memoryBudget = memoryBudget;
+            this.spillCodec = spillCodec;
+        }
+
+        double spillRatio() {
+            // Степень сжатия временных файлов по всем запускам (1 - без сжатия)
+            long raw = measurements.stream().mapToLong(m -> m.spillRawBytes).sum();
+            long stored = measurements.stream().mapToLong(m -> m.spillStoredBytes).sum();
+            return stored > 0 ? (double) raw / stored : 1.0;
+        }
+
+        long[] sorted(java.util.function.ToLongFunction<Measurement> metric) {
+            // Возвращает отсортированные значения метрики по всем запускам
+            return measurements.stream().mapToLong(metric).sorted().toArray();
+        }
+    }
+
+    static int run(String[] args) throws IOException {
+        // Разбирает параметры и прогоняет матрицу алгоритмов, входов и лимитов памяти
+        List<File> inputs = new ArrayList<>();
+        File source = null;
+        List<CorpusGenerator.Profile> profiles = new ArrayList<>();
+        long seed = 42;
+        List<Long> sizes = new ArrayList<>();
+        String algorithms = "all";
+        List<Long> memoryBudgets = new ArrayList<>();
+        List<String> spillCodecs = new ArrayList<>();
+        int warmup = 1;
+        int repetitions = 5;
+        File tempDir = null;
+        File csv = null;
+        File json = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--inputs":
+                    for (String path : value(args, ++i).split(",")) {
+                        inputs.add(new File(path));
+                    }
+                    break;
+                case "--source":
+                    source = new File(value(args, ++i));
+                    break;
+                case "--profile":
+                    for (String profile : value(args, ++i).split(",")) {
+                        profiles.add(CorpusGenerator.Profile.fromId(profile));
+                    }
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value(args, ++i));
+                    break;
+                case "--sizes":
+                    for (String size : value(args, ++i).split(",")) {
+                        sizes.add(SortCli.parseSize(size));
+                    }
+                    break;
+                case "--algorithm":
+                    algorithms = value(args, ++i);
+                    break;
+                case "--memory":
+                    for (String size : value(args, ++i).split(",")) {
+                        memoryBudgets.add(SortCli.parseSize(size));
+                    }
+                    break;
+                case "--spill-codec":
+                    for (String codec : value(args, ++i).split(",")) {
+                        BlockCodec.create(codec).close();
+                        spillCodecs.add(codec);
+                    }
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--repetitions":
+                    repetitions = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--temp-dir":
+                    tempDir = new File(value(args, ++i));
+                    break;
+                case "--csv":
+                    csv = new File(value(args, ++i));
+                    break;
+                case "--json":
+                    json = new File(value(args, ++i));
+                    break;
+                case "--help":
+                    System.out.println(USAGE);
+                    return 0;
+                default:
+                    throw new IllegalArgumentException("неизвестный параметр " + args[i] + "\n" + USAGE);
+            }
+        }
+
+        if (memoryBudgets.isEmpty()) {
+            memoryBudgets.add(SortJob.DEFAULT_MEMORY_BUDGET);
+        }
+        if (spillCodecs.isEmpty()) {
+            spillCodecs.add(SortJob.DEFAULT_SPILL_CODEC);
+        }
+        if (repetitions <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("количество запусков должно быть положительным");
+        }
+        if (!sizes.isEmpty() && source == null && profiles.isEmpty()) {
+            throw new IllegalArgumentException("для --sizes нужен --source или --profile");
+        }
+        if (!profiles.isEmpty() && sizes.isEmpty()) {
+            throw new IllegalArgumentException("для --profile нужен --sizes");
+        }
+
+        List<File> generatedInputs = new ArrayList<>();
+        Map<File, String> inputNames = new HashMap<>();
+        if (source != null) {
+            for (long size : sizes.isEmpty() ? List.of(source.length()) : sizes) {
+                File input = createSizedInput(source, size, tempDir);
+                generatedInputs.add(input);
+                inputs.add(input);
+                inputNames.put(input, source.getName() + "@" + (size >> 20) + "m");
+            }
+        }
+        for (CorpusGenerator.Profile profile : profiles) {
+            for (long size : sizes) {
+                // Синтетические входы воспроизводимы при одинаковом --seed
+                File input = File.createTempFile("bench_" + profile.getId() + "_" + (size >> 20) + "m_", ".txt", tempDir);
+                input.deleteOnExit();
+                new CorpusGenerator(profile, seed).generate(input, size);
+                generatedInputs.add(input);
+                inputs.add(input);
+                inputNames.put(input, profile.getId() + "@" + (size >> 20) + "m");
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("укажите --inputs, --source или --profile\n" + USAGE);
+        }
+        for (File input : inputs) {
+            if (!input.isFile()) {
+                throw new IllegalArgumentException("файл не найден: " + input);
+            }
+        }
+
+        List<CaseResult> results = new ArrayList<>();
+        try {
+            for (ExternalSortAlgorithm algorithm : selectAlgorithms(algorithms)) {
+                for (File input : inputs) {
+                    for (long memoryBudget : memoryBudgets) {
+                        for (String spillCodec : spillCodecs) {
+                            CaseResult result = new CaseResult(algorithm.getAlgorithmId(),
+                                    inputNames.getOrDefault(input, input.getName()), input.length(), memoryBudget,
+                                    spillCodec);
+                            runCase(algorithm, input, result, tempDir, warmup, repetitions);
+                            results.add(result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (File input : generatedInputs) {
+                input.delete();
+            }
+        }
+
+        printTable(results);
+        if (csv != null) {
+            writeCsv(results, csv);
+        }
+        if (json != null) {
+            writeJson(results, json);
+        }
+        return 0;
+    }
+
+    private static void runCase(ExternalSortAlgorithm algorithm, File input, CaseResult result, File tempDir,
+                                int warmup, int repetitions) throws IOException {
+        // Выполняет прогрев и повторные замеры одного сочетания параметров
+        System.err.printf("# %s, %s, память %d МБ, сжатие %s%n", result.algorithmId, result.inputName,
+                result.memoryBudget >> 20, result.spillCodec);
+        for (int i = 0; i < warmup + repetitions; i++) {
+            Measurement measurement = measureOnce(algorithm, input, result.memoryBudget, result.spillCodec, tempDir);
+            if (i >= warmup) {
+                result.measurements.add(measurement);
+            }
+        }
+    }
+
+    private static Measurement measureOnce(ExternalSortAlgorithm algorithm, File input, long memoryBudget,
+                                           String spillCodec, File tempDir) throws IOException {
+        // Запускает алгоритм один раз и снимает время, процессорное время, ввод-вывод и пик кучи
+        File output = File.createTempFile("bench_" + algorithm.getAlgorithmId() + "_", ".txt", tempDir);
+        SortJob job = new SortJob(input.getPath(), output.getPath());
+        job.setMemoryBudget(memoryBudget);
+        job.setTempDir(tempDir);
+        job.setSpillCodec(spillCodec);
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+
+        Measurement measurement = new Measurement();
+        long cpuStart = processCpuNanos();
+        long wallStart = System.nanoTime();
+        try {
+            algorithm.sort(job);
+        } finally {
+            measurement.wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+            measurement.cpuMillis = (processCpuNanos() - cpuStart) / 1_000_000;
+            output.delete();
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            measurement.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        measurement.bytesRead = job.getStatistics().getBytesRead();
+        measurement.bytesWritten = job.getStatistics().getBytesWritten();
+        measurement.spillRawBytes = job.getStatistics().getSpillRawBytes();
+        measurement.spillStoredBytes = job.getStatistics().getSpillStoredBytes();
+        return measurement;
+    }
+
+    private static long processCpuNanos() {
+        // Возвращает процессорное время всего процесса (все потоки алгоритма и сборщик мусора)
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+
+    private static File createSizedInput(File source, long size, File tempDir) throws IOException {
+        // Строит вход заданного размера, повторяя исходный файл и обрезая по границе слова
+        if (source.length() == 0) {
+            throw new IllegalArgumentException("исходный файл пуст: " + source);
+        }
+        File input = File.createTempFile("bench_input_" + (size >> 20) + "m_", ".txt", tempDir);
+        input.deleteOnExit();
+        byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(input))) {
+            while (written < size) {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(source))) {
+                    int count;
+                    while (written < size && (count = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, count);
+                        written += count;
+                    }
+                    // Дописывает байты до конца текущего слова
+                    int next;
+                    while (written >= size && (next = in.read()) >= 0 && !Character.isWhitespace(next)) {
+                        out.write(next);
+                    }
+                }
+                out.write('\n');
+                written++;
+            }
+        }
+        return input;
+    }
+
+    private static List<ExternalSortAlgorithm> selectAlgorithms(String ids) {
+        // Возвращает алгоритмы по списку идентификаторов через запятую или все алгоритмы
+        List<ExternalSortAlgorithm> all = ExternalSortAlgorithm.createAll();
+        if ("all".equals(ids)) {
+            return all;
+        }
+        List<ExternalSortAlgorithm> selected = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            ExternalSortAlgorithm found = null;
+            for (ExternalSortAlgorithm algorithm : all) {
+                if (algorithm.getAlgorithmId().equals(id)) {
+                    found = algorithm;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("неизвестный алгоритм " + id);
+            }
+            selected.add(found);
+        }
+        return selected;
+    }
+
+    private static String value(String[] args, int index) {
+        // Возвращает значение параметра или сообщает о его отсутствии
+        if (index >= args.length) {
+            throw new IllegalArgumentException("не указано значение для " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    static long percentile(long[] sortedValues, double percent) {
+        // Возвращает перцентиль методом ближайшего ранга
+        if (sortedValues.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(0, Math.min(sortedValues.length - 1, rank - 1))];
+    }
+
+    private static void printTable(List<CaseResult> results) {
+        // Выводит сводную таблицу (время в мс, объемы в МБ)
+        System.out.printf("%-12s %-24s %8s %8s %-8s %6s %9s %9s %9s %9s %9s %9s %9s%n",
+                "Algorithm", "Input", "In, MB", "Mem, MB", "Codec", "Ratio", "Min", "Median", "P95", "CPU",
+                "Read, MB", "Write, MB", "Heap, MB");
+        for (CaseResult result : results) {
+            long[] wall = result.sorted(m -> m.wallMillis);
+            System.out.printf(Locale.ROOT, "%-12s %-24s %8d %8d %-8s %6.2f %9d %9d %9d %9d %9d %9d %9d%n",
+                    result.algorithmId, result.inputName, result.inputBytes >> 20, result.memoryBudget >> 20,
+                    result.spillCodec, result.spillRatio(), wall[0], percentile(wall, 50), percentile(wall, 95),
+                    percentile(result.sorted(m -> m.cpuMillis), 50),
+                    percentile(result.sorted(m -> m.bytesRead), 50) >> 20,
+                    percentile(result.sorted(m -> m.bytesWritten), 50) >> 20,
+                    percentile(result.sorted(m -> m.peakHeapBytes), 100) >> 20);
+        }
+    }
+
+    private static void writeCsv(List<CaseResult> results, File file) throws IOException {
+        // Сохраняет сводку в CSV, по одной строке на сочетание параметров
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("algorithm,input,input_bytes,memory_budget,spill_codec,spill_ratio,repetitions," +
+                    "wall_min_ms,wall_median_ms,wall_p95_ms,cpu_median_ms,bytes_read,bytes_written,peak_heap_bytes");
+            for (CaseResult result : results) {
+                long[] wall = result.sorted(m -> m.wallMillis);
+                writer.printf(Locale.ROOT, "%s,%s,%d,%d,%s,%.3f,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                        result.algorithmId, result.inputName, result.inputBytes, result.memoryBudget,
+                        result.spillCodec, result.spillRatio(), wall.length, wall[0], percentile(wall, 50), percentile(wall, 95),
+                        percentile(result.sorted(m -> m.cpuMillis), 50),
+                        percentile(result.sorted(m -> m.bytesRead), 50),
+                        percentile(result.sorted(m -> m.bytesWritten), 50),
+                        percentile(result.sorted(m -> m.peakHeapBytes), 100));
+            }
+        }
+    }
+
+    private static void writeJson(List<CaseResult> results, File file) throws IOException {
+        // Сохраняет сводку и все отдельные замеры в JSON
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                CaseResult result = results.get(i);
+                long[] wall = result.sorted(m -> m.wallMillis);
+                writer.printf(Locale.ROOT, "  {\"algorithm\": \"%s\", \"input\": \"%s\", \"inputBytes\": %d, " +
+                                "\"memoryBudget\": %d, \"spillCodec\": \"%s\", \"spillRatio\": %.3f, \"wallMinMs\": %d, \"wallMedianMs\": %d, \"wallP95Ms\": %d, " +
+                                "\"cpuMedianMs\": %d, \"bytesRead\": %d, \"bytesWritten\": %d, \"peakHeapBytes\": %d, " +
+                                "\"wallMs\": %s}%s%n",
+                        result.algorithmId, escapeJson(result.inputName), result.inputBytes,
+                        result.memoryBudget, result.spillCodec, result.spillRatio(), wall[0], percentile(wall, 50), percentile(wall, 95),
+                        percentile(result.sorted(m -> m.cpuMillis), 50),
+                        percentile(result.sorted(m -> m.bytesRead), 50),
+                        percentile(result.sorted(m -> m.bytesWritten), 50),
+                        percentile(result.sorted(m -> m.peakHeapBytes), 100),
+                        Arrays.toString(result.measurements.stream().mapToLong(m -> m.wallMillis).toArray()),
+                        i + 1 < results.size() ? "," : "");
+            }
+            writer.println("]");
+        }
+    }
+
+    private static String escapeJson(String text) {
+        // Экранирует кавычки и обратную косую черту в строке JSON
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
\ No newline at end of file
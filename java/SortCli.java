@@ -0,0 +1,308 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SortCli {
+    // Период вывода прогресса в консоль (мс)
+    private static final long PROGRESS_PRINT_INTERVAL = 1000;
+    private static final String USAGE =
+            "Использование: java SortCli [параметры] <входной файл> [выходной файл]\n" +
+            "               java SortCli bench --help   (замеры производительности алгоритмов)\n" +
+            "               java SortCli generate --help   (генерация синтетических входных файлов)\n" +
+            "  --algorithm <id>   one_way | k_way | replacement | bucket | all (по умолчанию k_way)\n" +
+            "  --memory <размер>  лимит памяти, например 64m, 1g (по умолчанию 250m)\n" +
+            "  --temp-dir <путь>  директория для временных файлов\n" +
+            "  --max-fan-in <N>   наибольшее число серий в одном слиянии (по умолчанию 256)\n" +
+            "  --merge-threads <N> потоки финального слияния (по умолчанию - число ядер)\n" +
+            "  --sort-threads <N> потоки разбора и сортировки в памяти (по умолчанию - число ядер)\n" +
+            "  --spill-codec <id> сжатие временных файлов: none | deflate (по умолчанию none)\n" +
+            "  --parallel         для --algorithm all: запускать алгоритмы одновременно, разбирая\n" +
+            "                     входной файл один раз\n" +
+            "  --quiet            не выводить прогресс\n" +
+            "Если выходной файл не указан, он создается рядом с входным: <имя>_sorted_<id>.txt";
+
+    public static void main(String[] args) {
+        // Точка входа для запуска сортировки без графического интерфейса
+        try {
+            if (args.length > 0 && args[0].equals("bench")) {
+                System.exit(SortBenchmarkRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+            }
+            if (args.length > 0 && args[0].equals("generate")) {
+                System.exit(CorpusGenerator.run(Arrays.copyOfRange(args, 1, args.length)));
+            }
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println("ОШИБКА: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("ОШИБКА: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args) {
+        // Разбирает аргументы командной строки и выполняет выбранные сортировки
+        String algorithmId = "k_way";
+        long memoryBudget = SortJob.DEFAULT_MEMORY_BUDGET;
+        File tempDir = null;
+        int maxFanIn = SortJob.DEFAULT_MAX_MERGE_FAN_IN;
+        int mergeThreads = 0;
+        int sortThreads = 0;
+        String spillCodec = SortJob.DEFAULT_SPILL_CODEC;
+        boolean quiet = false;
+        boolean parallel = false;
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--algorithm":
+                    algorithmId = requireValue(args, ++i, "--algorithm");
+                    break;
+                case "--memory":
+                    memoryBudget = parseSize(requireValue(args, ++i, "--memory"));
+                    break;
+                case "--temp-dir":
+                    tempDir = new File(requireValue(args, ++i, "--temp-dir"));
+                    break;
+                case "--max-fan-in":
+                    maxFanIn = Integer.parseInt(requireValue(args, ++i, "--max-fan-in"));
+                    break;
+                case "--merge-threads":
+                    mergeThreads = Integer.parseInt(requireValue(args, ++i, "--merge-threads"));
+                    break;
+                case "--sort-threads":
+                    sortThreads = Integer.parseInt(requireValue(args, ++i, "--sort-threads"));
+                    break;
+                case "--spill-codec":
+                    spillCodec = requireValue(args, ++i, "--spill-codec");
+                    break;
+                case "--parallel":
+                    parallel = true;
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "--help":
+                case "-h":
+                    System.out.println(USAGE);
+                    return 0;
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("неизвестный параметр " + args[i]);
+                    }
+                    files.add(args[i]);
+            }
+        }
+
+        if (files.isEmpty() || files.size() > 2) {
+            throw new IllegalArgumentException("укажите входной файл и, при необходимости, выходной");
+        }
+        if (tempDir != null && !tempDir.isDirectory()) {
+            throw new IllegalArgumentException("директория не найдена: " + tempDir);
+        }
+
+        List<ExternalSortAlgorithm> algorithms = selectAlgorithms(algorithmId);
+        if (files.size() == 2 && algorithms.size() > 1) {
+            throw new IllegalArgumentException("для --algorithm all выходной файл задается автоматически");
+        }
+
+        String inputFile = files.get(0);
+        if (!new File(inputFile).isFile()) {
+            System.err.println("ОШИБКА: Файл не найден - " + inputFile);
+            return 1;
+        }
+
+        List<SortJob> jobs = new ArrayList<>();
+        for (ExternalSortAlgorithm algorithm : algorithms) {
+            String outputFile = files.size() == 2 ? files.get(1) : getOutputFilePath(inputFile, algorithm.getAlgorithmId());
+            SortJob job = new SortJob(inputFile, outputFile);
+            job.setMemoryBudget(memoryBudget);
+            job.setTempDir(tempDir);
+            job.setMaxMergeFanIn(maxFanIn);
+            job.setSpillCodec(spillCodec);
+            if (mergeThreads > 0) {
+                job.setMergeThreads(mergeThreads);
+            }
+            if (sortThreads > 0) {
+                job.setSortThreads(sortThreads);
+            }
+            jobs.add(job);
+        }
+
+        if (!parallel || algorithms.size() == 1) {
+            int exitCode = 0;
+            for (int i = 0; i < algorithms.size(); i++) {
+                exitCode = Math.max(exitCode, runJob(algorithms.get(i), jobs.get(i), quiet));
+            }
+            return exitCode;
+        }
+
+        // Алгоритмы работают одновременно и получают слова из одного общего чтения входного файла
+        ExecutorService executor = Executors.newFixedThreadPool(algorithms.size());
+        try (SharedInputScan scan = SharedInputScan.attach(new File(inputFile), jobs)) {
+            scan.start();
+            List<Future<Integer>> results = new ArrayList<>();
+            boolean silent = quiet;
+            for (int i = 0; i < algorithms.size(); i++) {
+                ExternalSortAlgorithm algorithm = algorithms.get(i);
+                SortJob job = jobs.get(i);
+                results.add(executor.submit(() -> runJob(algorithm, job, silent)));
+            }
+            int exitCode = 0;
+            for (Future<Integer> result : results) {
+                try {
+                    exitCode = Math.max(exitCode, result.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 1;
+                } catch (ExecutionException e) {
+                    exitCode = 1;
+                }
+            }
+            return exitCode;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int runJob(ExternalSortAlgorithm algorithm, SortJob job, boolean quiet) {
+        // Выполняет одно задание и печатает его итог; возвращает код завершения
+        ConsoleProgressListener listener = null;
+        if (!quiet) {
+            listener = new ConsoleProgressListener(algorithm.getAlgorithmId(), job.getProgress());
+            job.setProgressListener(listener);
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            algorithm.sort(job);
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.printf("%s: %.2f сек -> %s%n", algorithm.getAlgorithmName(), elapsed / 1000.0, job.getOutputFile());
+            SortStatistics statistics = job.getStatistics();
+            if (statistics.getSpillStoredBytes() > 0 && !BlockCodec.NONE.getName().equals(statistics.getSpillCodec())) {
+                System.out.printf("  временные файлы (%s): %d -> %d байт, сжатие %.2fx%n", statistics.getSpillCodec(),
+                        statistics.getSpillRawBytes(), statistics.getSpillStoredBytes(),
+                        statistics.getSpillCompressionRatio());
+            }
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Ошибка при выполнении " + algorithm.getAlgorithmName() + ": " + e.getMessage());
+            return 1;
+        } finally {
+            if (listener != null) {
+                listener.close();
+            }
+            try {
+                job.releaseSharedInput();
+            } catch (IOException e) {
+                // Подписка общего чтения закрывается без ошибок
+            }
+        }
+    }
+
+    private static List<ExternalSortAlgorithm> selectAlgorithms(String algorithmId) {
+        // Возвращает алгоритм с указанным идентификатором или все алгоритмы для "all"
+        List<ExternalSortAlgorithm> all = ExternalSortAlgorithm.createAll();
+        if ("all".equals(algorithmId)) {
+            return all;
+        }
+        for (ExternalSortAlgorithm algorithm : all) {
+            if (algorithm.getAlgorithmId().equals(algorithmId)) {
+                return List.of(algorithm);
+            }
+        }
+        throw new IllegalArgumentException("неизвестный алгоритм " + algorithmId);
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        // Возвращает значение параметра или сообщает о его отсутствии
+        if (index >= args.length) {
+            throw new IllegalArgumentException("не указано значение для " + option);
+        }
+        return args[index];
+    }
+
+    static long parseSize(String value) {
+        // Переводит размер вида 512k, 64m, 2g в байты
+        String text = value.trim().toLowerCase();
+        long multiplier = 1;
+        if (text.endsWith("k")) {
+            multiplier = 1024L;
+        } else if (text.endsWith("m")) {
+            multiplier = 1024L * 1024;
+        } else if (text.endsWith("g")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier != 1) {
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            long size = Long.parseLong(text) * multiplier;
+            if (size <= 0) {
+                throw new IllegalArgumentException("размер должен быть положительным: " + value);
+            }
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("некорректный размер: " + value);
+        }
+    }
+
+    private static String getOutputFilePath(String inputPath, String suffix) {
+        // Генерирует путь для выходного файла так же, как графический интерфейс
+        File inputFile = new File(inputPath).getAbsoluteFile();
+        String fileName = inputFile.getName();
+        String baseName = fileName.contains(".") ?
+                fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        return new File(inputFile.getParentFile(), baseName + "_sorted_" + suffix + ".txt").getPath();
+    }
+
+    private static class ConsoleProgressListener implements SortProgressListener {
+        // Выводит этапы алгоритма сразу, а процент выполнения - периодически, опрашивая счетчики
+        private final String algorithmId;
+        private final SortProgress progress;
+        private final ScheduledExecutorService sampler;
+        private int lastPercent = -1;
+
+        ConsoleProgressListener(String algorithmId, SortProgress progress) {
+            this.algorithmId = algorithmId;
+            this.progress = progress;
+            this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "progress-" + algorithmId);
+                thread.setDaemon(true);
+                return thread;
+            });
+            sampler.scheduleAtFixedRate(this::printPercent, PROGRESS_PRINT_INTERVAL, PROGRESS_PRINT_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public synchronized void phaseChanged(SortProgress progress) {
+            // Печатает новый этап вместе с текущим процентом
+            lastPercent = progress.getPercent();
+            System.err.printf("[%s] %3d%% %s%n", algorithmId, lastPercent, progress.getPhase());
+        }
+
+        private synchronized void printPercent() {
+            // Печатает строку только при изменении процента, чтобы не засорять вывод
+            int percent = progress.getPercent();
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                System.err.printf("[%s] %3d%% %s%n", algorithmId, percent, progress.getStatus());
+            }
+        }
+
+        void close() {
+            // Останавливает периодический вывод
+            sampler.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
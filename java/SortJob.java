@@ -0,0 +1,150 @@
+import java.io.File;
+import java.io.IOException;
+
+public class SortJob {
+    // Объем памяти по умолчанию для обработки одного чанка
+    public static final long DEFAULT_MEMORY_BUDGET = 250L * 1024 * 1024;
+    // Наибольшее количество серий, открытых одновременно при слиянии
+    public static final int DEFAULT_MAX_MERGE_FAN_IN = 256;
+    // Временные файлы по умолчанию не сжимаются
+    public static final String DEFAULT_SPILL_CODEC = "none";
+
+    private final String inputFile;
+    private final String outputFile;
+    // Максимальный объем данных, который алгоритм держит в памяти
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    // Наибольшее количество серий в одном слиянии (ограничивает число открытых файлов)
+    private int maxMergeFanIn = DEFAULT_MAX_MERGE_FAN_IN;
+    // Количество потоков финального слияния (1 - слияние в одном потоке)
+    private int mergeThreads = Runtime.getRuntime().availableProcessors();
+    // Количество потоков разбора входного файла и сортировки в памяти (1 - в одном потоке)
+    private int sortThreads = Runtime.getRuntime().availableProcessors();
+    // Директория для временных файлов (null - системная временная директория)
+    private File tempDir;
+    // Кодек сжатия блоков временных файлов
+    private String spillCodec = DEFAULT_SPILL_CODEC;
+    // Слова из общего чтения входного файла для первого прохода алгоритма (null - читать файл самому)
+    private WordInput sharedInput;
+    // Состояние прогресса сортировки, которое опрашивают интерфейс и консоль
+    private final SortProgress progress = new SortProgress();
+    // Счетчики ввода-вывода, заполняемые алгоритмом
+    private final SortStatistics statistics = new SortStatistics();
+
+    public SortJob(String inputFile, String outputFile) {
+        // Создает задание на сортировку входного файла в выходной
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        // Устанавливает лимит памяти, не допуская нулевых и отрицательных значений
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Лимит памяти должен быть положительным: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public int getMaxMergeFanIn() {
+        return maxMergeFanIn;
+    }
+
+    public void setMaxMergeFanIn(int maxMergeFanIn) {
+        // Устанавливает наибольшее количество сливаемых за один проход серий (не меньше двух)
+        if (maxMergeFanIn < 2) {
+            throw new IllegalArgumentException("Количество сливаемых серий должно быть не меньше 2: " + maxMergeFanIn);
+        }
+        this.maxMergeFanIn = maxMergeFanIn;
+    }
+
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+    public void setMergeThreads(int mergeThreads) {
+        // Устанавливает количество потоков финального слияния (не меньше одного)
+        if (mergeThreads < 1) {
+            throw new IllegalArgumentException("Количество потоков слияния должно быть положительным: " + mergeThreads);
+        }
+        this.mergeThreads = mergeThreads;
+    }
+
+    public int getSortThreads() {
+        return sortThreads;
+    }
+
+    public void setSortThreads(int sortThreads) {
+        // Устанавливает количество потоков сортировки в памяти (не меньше одного)
+        if (sortThreads < 1) {
+            throw new IllegalArgumentException("Количество потоков сортировки должно быть положительным: " + sortThreads);
+        }
+        this.sortThreads = sortThreads;
+    }
+
+    public File getTempDir() {
+        return tempDir;
+    }
+
+    public void setTempDir(File tempDir) {
+        this.tempDir = tempDir;
+    }
+
+    public String getSpillCodec() {
+        return spillCodec;
+    }
+
+    public void setSpillCodec(String spillCodec) {
+        // Устанавливает кодек временных файлов, проверяя, что он существует
+        BlockCodec.create(spillCodec).close();
+        this.spillCodec = spillCodec;
+    }
+
+    synchronized void setSharedInput(WordInput sharedInput) {
+        // Подключает задание к общему чтению входного файла (см. SharedInputScan)
+        this.sharedInput = sharedInput;
+    }
+
+    synchronized boolean hasSharedInput() {
+        return sharedInput != null;
+    }
+
+    synchronized WordInput takeSharedInput() {
+        // Отдает общий поток слов один раз: следующие проходы читают файл сами
+        WordInput input = sharedInput;
+        sharedInput = null;
+        return input;
+    }
+
+    void releaseSharedInput() throws IOException {
+        // Отписывает задание от общего чтения, если алгоритм так и не открыл общий поток слов
+        // (например, завершился с ошибкой): иначе чтение ждало бы его
+        WordInput input = takeSharedInput();
+        if (input != null) {
+            input.close();
+        }
+    }
+
+    public SortProgress getProgress() {
+        return progress;
+    }
+
+    public SortStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setProgressListener(SortProgressListener progressListener) {
+        // Устанавливает слушателя смены этапов сортировки
+        progress.setListener(progressListener);
+    }
+}
\ No newline at end of file
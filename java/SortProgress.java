@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SortProgress {
+    // Единица, в которой измеряется работа текущего этапа
+    public enum Unit {
+        BYTES("МБ"),
+        WORDS("слов"),
+        STEPS("шагов");
+
+        private final String label;
+
+        Unit(String label) {
+            this.label = label;
+        }
+
+        String format(long done, long total) {
+            // Форматирует выполненную и общую работу для строки статуса
+            if (this == BYTES) {
+                return String.format("%d/%d %s", done >> 20, total >> 20, label);
+            }
+            return done + "/" + total + " " + label;
+        }
+    }
+
+    // Слушатель, получающий уведомления о смене этапов
+    private volatile SortProgressListener listener = SortProgressListener.NONE;
+
+    // Описание этапа и диапазон процентов, который он занимает на прогресс-баре
+    private volatile String phase = "Ожидание";
+    private volatile int phaseFrom;
+    private volatile int phaseTo;
+    private volatile Unit unit = Unit.STEPS;
+    private volatile long total;
+    // Работа, выполненная в текущем этапе (обновляется алгоритмом без блокировок)
+    private final AtomicLong done = new AtomicLong();
+
+    // Время начала и окончания сортировки и время последней смены этапа
+    private volatile long startNanos;
+    private volatile long finishNanos;
+    private volatile long phaseNanos;
+
+    public void setListener(SortProgressListener listener) {
+        // Устанавливает слушателя этапов, null заменяется пустым слушателем
+        this.listener = listener != null ? listener : SortProgressListener.NONE;
+    }
+
+    public void start() {
+        // Отмечает начало сортировки
+        startNanos = System.nanoTime();
+        finishNanos = 0;
+        startPhase("запуск...", 0, 0, Unit.STEPS, 0);
+    }
+
+    public void startPhase(String phase, int fromPercent, int toPercent, Unit unit, long total) {
+        // Начинает новый этап: сбрасывает счетчик работы и уведомляет слушателя
+        this.done.set(0);
+        this.unit = unit;
+        this.total = total;
+        this.phaseFrom = fromPercent;
+        this.phaseTo = toPercent;
+        this.phase = phase;
+        this.phaseNanos = System.nanoTime();
+        listener.phaseChanged(this);
+    }
+
+    public void setDone(long value) {
+        // Публикует выполненную работу этапа обычной записью (для одного потока-писателя)
+        done.lazySet(value);
+    }
+
+    public void addDone(long delta) {
+        // Атомарно добавляет выполненную работу (для нескольких потоков-писателей)
+        done.addAndGet(delta);
+    }
+
+    public void setTotal(long total) {
+        // Уточняет общий объем работы текущего этапа
+        this.total = total;
+    }
+
+    public void finish(String phase) {
+        // Отмечает завершение сортировки
+        finishNanos = System.nanoTime();
+        startPhase(phase, 100, 100, Unit.STEPS, 0);
+    }
+
+    public int getPercent() {
+        // Вычисляет процент выполнения по диапазону этапа и выполненной работе
+        int from = phaseFrom;
+        int to = phaseTo;
+        long totalWork = total;
+        if (totalWork <= 0 || to <= from) {
+            return to;
+        }
+        long doneWork = Math.min(done.get(), totalWork);
+        return from + (int) ((doneWork * (to - from)) / totalWork);
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public String getStatus() {
+        // Формирует строку статуса в момент опроса, а не в цикле сортировки
+        long totalWork = total;
+        if (totalWork <= 0) {
+            return phase;
+        }
+        return phase + " " + unit.format(done.get(), totalWork);
+    }
+
+    public long getPhaseNanos() {
+        return phaseNanos;
+    }
+
+    public boolean isStarted() {
+        return startNanos != 0;
+    }
+
+    public boolean isFinished() {
+        return finishNanos != 0;
+    }
+
+    public long getElapsedMillis() {
+        // Возвращает время работы алгоритма (до завершения - текущее)
+        if (startNanos == 0) {
+            return 0;
+        }
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+}
\ No newline at end of file
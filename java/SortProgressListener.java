@@ -0,0 +1,8 @@
+public interface SortProgressListener {
+    // Слушатель, который ничего не делает (прогресс при этом можно опрашивать таймером)
+    SortProgressListener NONE = progress -> {
+    };
+
+    void phaseChanged(SortProgress progress);
+    // Сообщает о смене этапа сортировки; вызывается редко, не из горячих циклов
+}
\ No newline at end of file
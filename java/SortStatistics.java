@@ -0,0 +1,99 @@
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SortStatistics {
+    // Объем данных, прочитанных и записанных алгоритмом (входной файл, временные файлы, результат)
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    // Размер блоков временных файлов до и после сжатия и имя кодека
+    private final AtomicLong spillRawBytes = new AtomicLong();
+    private final AtomicLong spillStoredBytes = new AtomicLong();
+    private volatile String spillCodec = "none";
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getSpillRawBytes() {
+        return spillRawBytes.get();
+    }
+
+    public long getSpillStoredBytes() {
+        return spillStoredBytes.get();
+    }
+
+    public String getSpillCodec() {
+        return spillCodec;
+    }
+
+    public double getSpillCompressionRatio() {
+        // Во сколько раз блоки временных файлов сжались (1 - без сжатия или без временных файлов)
+        long stored = spillStoredBytes.get();
+        return stored > 0 ? (double) spillRawBytes.get() / stored : 1.0;
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    void addSpillBytes(long rawBytes, long storedBytes) {
+        spillRawBytes.addAndGet(rawBytes);
+        spillStoredBytes.addAndGet(storedBytes);
+    }
+
+    void setSpillCodec(String spillCodec) {
+        this.spillCodec = spillCodec;
+    }
+
+    InputStream countReads(InputStream in) {
+        // Оборачивает поток так, что все прочитанные байты попадают в статистику
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int value = super.read();
+                if (value >= 0) {
+                    bytesRead.incrementAndGet();
+                }
+                return value;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    bytesRead.addAndGet(count);
+                }
+                return count;
+            }
+        };
+    }
+
+    OutputStream countWrites(OutputStream out) {
+        // Оборачивает поток так, что все записанные байты попадают в статистику
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int value) throws IOException {
+                out.write(value);
+                bytesWritten.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+                bytesWritten.addAndGet(length);
+            }
+        };
+    }
+}
\ No newline at end of file
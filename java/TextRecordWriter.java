@@ -0,0 +1,34 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+class TextRecordWriter implements RecordWriter {
+    // Выходной файл пишется в кодировке по умолчанию, по одному слову в строке (как BufferedWriter.newLine)
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+    // При выходной кодировке UTF-8 слова серий копируются без перекодирования
+    private static final boolean COPY_BYTES = CHARSET.equals(StandardCharsets.UTF_8);
+
+    private final OutputStream out;
+
+    TextRecordWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        // Записывает слово и перевод строки
+        if (COPY_BYTES) {
+            out.write(buffer, offset, length);
+        } else {
+            out.write(new String(buffer, offset, length, StandardCharsets.UTF_8).getBytes(CHARSET));
+        }
+        out.write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,334 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+class WordArena {
+    // Слова хранятся подряд в UTF-8 на больших страницах; слово не пересекает границу страницы
+    private static final int MIN_PAGE_SIZE = 4 * 1024;
+    private static final int MAX_PAGE_SIZE = 1024 * 1024;
+    // Байт индекса на слово: адрес (long), префикс ключа (long), длина (int),
+    // порядок сортировки (int) и вспомогательный массив сортировки слиянием (int)
+    private static final int INDEX_BYTES_PER_WORD = 28;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Участки не длиннее порога сортируются вставками
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    // Участки не длиннее порога поразрядная сортировка передает сортировке слиянием
+    private static final int RADIX_SORT_THRESHOLD = 64;
+    // Участки не короче порога при параллельной сортировке сортируются отдельными задачами
+    private static final int PARALLEL_SORT_THRESHOLD = 16 * 1024;
+    // Символов в одном разряде поразрядной сортировки (столько же, сколько в префиксе ключа)
+    private static final int CHARACTERS_PER_DIGIT = 4;
+
+    private final long maxBytes;
+    private final int pageSize;
+    private final List<byte[]> pages = new ArrayList<>();
+    // Текущая страница и положение следующего слова в ней
+    private byte[] page;
+    private int pagePosition;
+    private long pageBytes;
+
+    // Адрес слова: номер страницы в старших 32 битах, смещение в странице в младших
+    private long[] addresses;
+    private int[] lengths;
+    // Первые символы слова после приведения регистра (см. ByteWordOrder.prefixKey): большинство
+    // сравнений при сортировке решается по ним без обращения к страницам. Во время поразрядной
+    // сортировки здесь хранится текущий разряд слова, а предыдущие разряды у всех слов участка совпадают
+    private long[] keys;
+    // Номера слов в порядке сортировки
+    private int[] order;
+    private int size;
+
+    WordArena(long maxBytes) {
+        // Создает пустой чанк, который вместе с индексом занимает не больше maxBytes байт
+        this(maxBytes, INITIAL_CAPACITY);
+    }
+
+    WordArena(long maxBytes, int capacity) {
+        // Создает чанк с индексом сразу на capacity слов, когда их количество известно заранее
+        this.maxBytes = maxBytes;
+        this.pageSize = pageSize(maxBytes);
+        this.addresses = new long[Math.max(1, capacity)];
+        this.lengths = new int[addresses.length];
+        this.keys = new long[addresses.length];
+    }
+
+    static long estimateBytes(long words, long dataBytes, long maxBytes) {
+        // Оценка памяти чанка с лимитом maxBytes из words слов общей длиной dataBytes с индексом нужного
+        // размера; на каждой странице может остаться неиспользованный хвост, поэтому к словам добавляется
+        // запас, а последняя страница может быть заполнена не целиком
+        return dataBytes + dataBytes / 8 + pageSize(maxBytes) + words * INDEX_BYTES_PER_WORD;
+    }
+
+    private static int pageSize(long maxBytes) {
+        // Размер страницы чанка: шестнадцатая часть лимита памяти в пределах MIN_PAGE_SIZE..MAX_PAGE_SIZE
+        return (int) Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, maxBytes / 16));
+    }
+
+    boolean fits(int length) {
+        // Проверяет, поместится ли еще одно слово в лимит памяти; первое слово помещается всегда
+        if (size == 0) {
+            return true;
+        }
+        long data = pageBytes;
+        if (pagePosition + length > page.length) {
+            data += Math.max(pageSize, length);
+        }
+        long capacity = size < lengths.length ? lengths.length : size + 1;
+        return data + capacity * INDEX_BYTES_PER_WORD <= maxBytes;
+    }
+
+    void add(byte[] buffer, int offset, int length) {
+        // Копирует слово в UTF-8 на текущую страницу
+        if (page == null || pagePosition + length > page.length) {
+            page = new byte[Math.max(pageSize, length)];
+            pages.add(page);
+            pageBytes += page.length;
+            pagePosition = 0;
+        }
+        if (size == lengths.length) {
+            grow();
+        }
+        System.arraycopy(buffer, offset, page, pagePosition, length);
+        addresses[size] = (long) (pages.size() - 1) << 32 | pagePosition;
+        lengths[size] = length;
+        keys[size] = ByteWordOrder.prefixKey(page, pagePosition, length);
+        pagePosition += length;
+        size++;
+    }
+
+    private void grow() {
+        // Увеличивает индекс в полтора раза, но не больше, чем позволяет лимит памяти
+        long available = (maxBytes - pageBytes) / INDEX_BYTES_PER_WORD;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(size + 1, Math.min(size + (size >> 1), available)));
+        long[] newAddresses = new long[capacity];
+        int[] newLengths = new int[capacity];
+        long[] newKeys = new long[capacity];
+        System.arraycopy(addresses, 0, newAddresses, 0, size);
+        System.arraycopy(lengths, 0, newLengths, 0, size);
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        addresses = newAddresses;
+        lengths = newLengths;
+        keys = newKeys;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void sort() {
+        // Сортирует чанк в текущем потоке
+        sort(null);
+    }
+
+    void sort(ForkJoinPool pool) {
+        // Сортирует номера слов без учета регистра (как String.CASE_INSENSITIVE_ORDER).
+        // Трехпутевая поразрядная быстрая сортировка (multikey quicksort) сравнивает слова
+        // по разрядам из четырех символов после приведения регистра, поэтому общие начала слов
+        // не сравниваются заново на каждом уровне. Разбиение устойчиво, маленькие участки
+        // досортировываются слиянием, и равные слова остаются в порядке входного файла.
+        // С пулом потоков участки после разбиения сортируются параллельно: они не пересекаются
+        // ни в order, ни во вспомогательном массиве, а у каждого слова свой разряд в keys
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[size];
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(size));
+        if (pool == null || pool.getParallelism() == 1 || size < 2 * PARALLEL_SORT_THRESHOLD) {
+            radixSort(buffer, 0, size, 0, depthLimit, false);
+            return;
+        }
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> radixSort(buffer, 0, size, 0, depthLimit, true));
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private void radixSort(int[] buffer, int from, int to, int digit, int depthLimit, boolean parallel) {
+        // Сортирует участок [from, to), у слов которого совпадают разряды до digit;
+        // keys содержит разряд digit каждого слова участка
+        List<ForkJoinTask<?>> forked = new ArrayList<>();
+        while (to - from > RADIX_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                // Неудачные опорные разряды: участок сортируется слиянием за n log n
+                break;
+            }
+            long pivot = medianKey(order[from], order[(from + to) >>> 1], order[to - 1]);
+
+            // Устойчивое разбиение на разряды меньше, равные и больше опорного
+            int less = 0;
+            int equal = 0;
+            for (int i = from; i < to; i++) {
+                int result = Long.compareUnsigned(keys[order[i]], pivot);
+                if (result < 0) {
+                    less++;
+                } else if (result == 0) {
+                    equal++;
+                }
+            }
+            int lessPosition = from;
+            int equalPosition = from + less;
+            int greaterPosition = equalPosition + equal;
+            for (int i = from; i < to; i++) {
+                int word = order[i];
+                int result = Long.compareUnsigned(keys[word], pivot);
+                if (result < 0) {
+                    buffer[lessPosition++] = word;
+                } else if (result == 0) {
+                    buffer[equalPosition++] = word;
+                } else {
+                    buffer[greaterPosition++] = word;
+                }
+            }
+            System.arraycopy(buffer, from, order, from, to - from);
+
+            int lessFrom = from;
+            int equalFrom = from + less;
+            int equalTo = equalFrom + equal;
+            int lessDepthLimit = depthLimit;
+            if (parallel && less >= PARALLEL_SORT_THRESHOLD) {
+                forked.add(ForkJoinTask.adapt(
+                        () -> radixSort(buffer, lessFrom, equalFrom, digit, lessDepthLimit, true)).fork());
+            } else {
+                radixSort(buffer, lessFrom, equalFrom, digit, depthLimit, parallel);
+            }
+            if (parallel && equal >= PARALLEL_SORT_THRESHOLD) {
+                forked.add(ForkJoinTask.adapt(
+                        () -> sortEqualDigits(buffer, equalFrom, equalTo, digit, pivot, true)).fork());
+            } else {
+                sortEqualDigits(buffer, equalFrom, equalTo, digit, pivot, parallel);
+            }
+            from = equalTo;
+        }
+        mergeSort(buffer, from, to);
+        for (ForkJoinTask<?> task : forked) {
+            task.join();
+        }
+    }
+
+    private void sortEqualDigits(int[] buffer, int from, int to, int digit, long key, boolean parallel) {
+        // Сортирует участок слов с одинаковым разрядом digit по следующему разряду. Если разряд
+        // заканчивается нулевым символом (слово, скорее всего, закончилось) или символом 0xFFFF
+        // (в префиксе есть символ вне BMP), слова сравниваются целиком
+        int last = (int) key & 0xFFFF;
+        if (to - from <= 1) {
+            return;
+        }
+        if (last == 0 || last == 0xFFFF) {
+            mergeSort(buffer, from, to);
+            return;
+        }
+        int skip = (digit + 1) * CHARACTERS_PER_DIGIT;
+        for (int i = from; i < to; i++) {
+            int word = order[i];
+            long address = addresses[word];
+            byte[] wordPage = pages.get((int) (address >>> 32));
+            int offset = (int) address;
+            int end = offset + lengths[word];
+            int start = ByteWordOrder.skipCharacters(wordPage, offset, lengths[word], skip);
+            keys[word] = ByteWordOrder.prefixKey(wordPage, start, end - start);
+        }
+        radixSort(buffer, from, to, digit + 1, 2 * (32 - Integer.numberOfLeadingZeros(to - from)), parallel);
+    }
+
+    private long medianKey(int a, int b, int c) {
+        // Медиана разрядов трех слов
+        long x = keys[a];
+        long y = keys[b];
+        long z = keys[c];
+        if (Long.compareUnsigned(x, y) > 0) {
+            long t = x;
+            x = y;
+            y = t;
+        }
+        if (Long.compareUnsigned(y, z) > 0) {
+            y = z;
+        }
+        return Long.compareUnsigned(x, y) > 0 ? x : y;
+    }
+
+    private void mergeSort(int[] buffer, int from, int to) {
+        // Досортировывает участок сравнением слов
+        if (to - from > 1) {
+            System.arraycopy(order, from, buffer, from, to - from);
+            mergeSort(buffer, order, from, to);
+        }
+    }
+
+    private void mergeSort(int[] source, int[] target, int from, int to) {
+        // Сортирует участок [from, to) из source в target; в начале оба массива совпадают
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(target, from, to);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(target, source, from, middle);
+        mergeSort(target, source, middle, to);
+
+        // Уже упорядоченные половины не сливаются
+        if (compare(source[middle - 1], source[middle]) <= 0) {
+            System.arraycopy(source, from, target, from, to - from);
+            return;
+        }
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(source[left], source[right]) <= 0)) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    private void insertionSort(int[] words, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int word = words[i];
+            int j = i;
+            while (j > from && compare(words[j - 1], word) > 0) {
+                words[j] = words[j - 1];
+                j--;
+            }
+            words[j] = word;
+        }
+    }
+
+    private int compare(int first, int second) {
+        // Сравнивает два слова чанка: сначала префиксы ключей, при равенстве - слова целиком
+        long firstKey = keys[first];
+        long secondKey = keys[second];
+        if (firstKey != secondKey) {
+            return Long.compareUnsigned(firstKey, secondKey);
+        }
+        long a = addresses[first];
+        long b = addresses[second];
+        return ByteWordOrder.compare(pages.get((int) (a >>> 32)), (int) a, lengths[first],
+                pages.get((int) (b >>> 32)), (int) b, lengths[second]);
+    }
+
+    void writeSorted(RecordWriter writer) throws IOException {
+        // Записывает слова в порядке сортировки
+        for (int i = 0; i < size; i++) {
+            int word = order[i];
+            long address = addresses[word];
+            writer.write(pages.get((int) (address >>> 32)), (int) address, lengths[word]);
+        }
+    }
+
+    void writeInOrder(RecordWriter writer) throws IOException {
+        // Записывает слова в порядке добавления
+        for (int word = 0; word < size; word++) {
+            long address = addresses[word];
+            writer.write(pages.get((int) (address >>> 32)), (int) address, lengths[word]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+interface WordInput extends Closeable {
+    boolean next() throws IOException;
+    // Переходит к следующему слову; false - слова закончились
+
+    void pushBack();
+    // Вернуть текущее слово еще раз при следующем вызове next()
+
+    byte[] buffer();
+    // Байты текущего слова начиная с offset() (при чтении файла - в его кодировке)
+
+    int offset();
+
+    int length();
+
+    byte[] utf8Buffer();
+    // Текущее слово в UTF-8 начиная с utf8Offset()
+
+    int utf8Offset();
+
+    int utf8Length();
+
+    String word();
+    // Текущее слово в виде строки
+
+    long position();
+    // Количество разобранных байт входного файла
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+class WordSource implements WordInput {
+    // Входной файл читается в кодировке по умолчанию (как раньше через InputStreamReader).
+    // Пробельные символы ищутся по байтам, что верно для кодировок, совместимых с ASCII
+    private static final Charset CHARSET = Charset.defaultCharset();
+    // Слова входного файла в UTF-8 передаются в серии без перекодирования
+    private static final boolean UTF8 = CHARSET.equals(StandardCharsets.UTF_8);
+    // Размер окна файла, отображаемого в память; окна диапазона не заходят за его конец, а за концом
+    // диапазона отображаются маленькие окна, только чтобы дочитать последнее слово
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int TAIL_WINDOW_SIZE = 64 * 1024;
+    // Начальный размер буфера слова; буфер, выросший под очень длинное слово, возвращается к нему
+    private static final int INITIAL_WORD_CAPACITY = 256;
+    private static final int MAX_RETAINED_WORD_CAPACITY = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final SortStatistics statistics;
+    // Наибольшая длина слова: более длинное слово не поместится в лимит памяти сортировки
+    private final long maxWordBytes;
+    // Разбираются слова, которые начинаются до смещения end
+    private final long end;
+
+    // Текущее окно и смещение его начала в файле
+    private MappedByteBuffer window;
+    private long windowStart;
+    // Смещение в файле, с которого продолжится разбор, и смещение, до которого разобранные байты
+    // учтены в статистике чтения
+    private long position;
+    private long counted;
+
+    // Байты текущего слова (слово может начинаться в одном окне и заканчиваться в другом)
+    private byte[] word = new byte[INITIAL_WORD_CAPACITY];
+    private int wordLength;
+    // Текущее слово в UTF-8 (null - еще не получено)
+    private byte[] utf8Word;
+    private int utf8Length;
+    // Текущее слово нужно вернуть еще раз при следующем вызове next()
+    private boolean repeat;
+
+    WordSource(File file, SortStatistics statistics) throws IOException {
+        // Открывает файл без ограничения длины слова (ограничено только размером массива)
+        this(file, statistics, Integer.MAX_VALUE - 8);
+    }
+
+    WordSource(File file, SortStatistics statistics, long maxWordBytes) throws IOException {
+        // Открывает файл целиком
+        this(file, statistics, maxWordBytes, 0, Long.MAX_VALUE);
+    }
+
+    WordSource(File file, SortStatistics statistics, long maxWordBytes, long start, long end) throws IOException {
+        // Открывает диапазон байт [start, end) файла; окна отображаются в память по мере разбора,
+        // поэтому в памяти никогда не бывает больше одного окна и текущего слова, какой бы длины
+        // ни были строки файла. Границы диапазона сдвигаются к пробельным символам: слово относится
+        // к диапазону, в котором оно начинается, даже если заканчивается за его концом
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.statistics = statistics;
+        this.maxWordBytes = Math.min(maxWordBytes, Integer.MAX_VALUE - 8);
+        this.end = Math.min(end, size);
+        if (start > 0) {
+            try {
+                position = start - 1;
+                counted = position;
+                skipWordTail();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    static long[] splitRanges(long size, int count) {
+        // Делит файл на count примерно равных диапазонов; возвращает count + 1 границ
+        long[] bounds = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = size * i / count;
+        }
+        return bounds;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        // Переходит к следующему слову; false - слова закончились.
+        // Слова разделяются пробельными символами \s (пробел, \t, \n, \u000B, \f, \r)
+        if (repeat) {
+            repeat = false;
+            return true;
+        }
+        utf8Word = null;
+        while (skipSpaces()) {
+            if (word.length > MAX_RETAINED_WORD_CAPACITY) {
+                word = new byte[INITIAL_WORD_CAPACITY];
+            }
+            wordLength = 0;
+            boolean visible = false;
+            while (position < size) {
+                int index = windowIndex();
+                int limit = window.limit();
+                int from = index;
+                while (index < limit) {
+                    byte value = window.get(index);
+                    if (isSpace(value)) {
+                        break;
+                    }
+                    // Как и word.trim().isEmpty(), не считает словом последовательность управляющих символов
+                    visible |= (value & 0xFF) > ' ';
+                    index++;
+                }
+                append(from, index);
+                position = windowStart + index;
+                if (index < limit) {
+                    break;
+                }
+            }
+            if (visible) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipSpaces() throws IOException {
+        // Пропускает пробельные символы; false - в диапазоне больше нет слов
+        while (position < end) {
+            int index = windowIndex();
+            int limit = window.limit();
+            while (index < limit && isSpace(window.get(index))) {
+                index++;
+            }
+            position = windowStart + index;
+            if (index < limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipWordTail() throws IOException {
+        // Пропускает конец слова, начатого в предыдущем диапазоне
+        while (position < size) {
+            int index = windowIndex();
+            int limit = window.limit();
+            while (index < limit && !isSpace(window.get(index))) {
+                index++;
+            }
+            position = windowStart + index;
+            if (index < limit) {
+                return;
+            }
+        }
+    }
+
+    private int windowIndex() throws IOException {
+        // Возвращает положение разбора в окне, отображая следующее окно, если текущее закончилось
+        if (window == null || position >= windowStart + window.limit()) {
+            countBytesRead();
+            windowStart = position;
+            long length = position < end ? Math.min(WINDOW_SIZE, end - position)
+                    : Math.min(TAIL_WINDOW_SIZE, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        }
+        return (int) (position - windowStart);
+    }
+
+    private void countBytesRead() {
+        // Учитывает в статистике байты, разобранные с прошлого учета: отображенные, но не разобранные
+        // байты окна не читаются с диска и не учитываются
+        if (statistics != null) {
+            statistics.addBytesRead(position - counted);
+        }
+        counted = position;
+    }
+
+    private void append(int from, int to) throws IOException {
+        // Копирует байты окна [from, to) в конец текущего слова
+        int length = to - from;
+        if ((long) wordLength + length > maxWordBytes) {
+            throw new IOException("слово со смещения " + (windowStart + from - wordLength) + " длиннее "
+                    + maxWordBytes + " байт и не помещается в лимит памяти");
+        }
+        if (wordLength + length > word.length) {
+            word = Arrays.copyOf(word, (int) Math.min(maxWordBytes, Math.max(2L * word.length, wordLength + length)));
+        }
+        window.get(from, word, wordLength, length);
+        wordLength += length;
+    }
+
+    private static boolean isSpace(byte value) {
+        return value == ' ' || (value >= '\t' && value <= '\r');
+    }
+
+    @Override
+    public void pushBack() {
+        // Вернуть текущее слово еще раз при следующем вызове next()
+        repeat = true;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return word;
+    }
+
+    @Override
+    public int offset() {
+        return 0;
+    }
+
+    @Override
+    public int length() {
+        return wordLength;
+    }
+
+    @Override
+    public byte[] utf8Buffer() {
+        // Текущее слово в UTF-8 (начиная с нулевого байта). Корректный UTF-8 не перекодируется,
+        // остальное декодируется как раньше, с заменой неверных последовательностей
+        if (utf8Word == null) {
+            if (UTF8 && ByteWordOrder.isValid(word, 0, wordLength)) {
+                utf8Word = word;
+                utf8Length = wordLength;
+            } else {
+                utf8Word = ByteWordOrder.encode(word());
+                utf8Length = utf8Word.length;
+            }
+        }
+        return utf8Word;
+    }
+
+    @Override
+    public int utf8Offset() {
+        return 0;
+    }
+
+    @Override
+    public int utf8Length() {
+        utf8Buffer();
+        return utf8Length;
+    }
+
+    @Override
+    public String word() {
+        // Текущее слово в виде строки
+        return new String(word, 0, wordLength, CHARSET);
+    }
+
+    @Override
+    public long position() {
+        // Количество разобранных байт файла
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        countBytesRead();
+        channel.close();
+    }
+}
\ No newline at end of file